@@ -0,0 +1,24 @@
+package de.vwsoft.barcodelib4jservice;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+// Entry point of benchmarks.jar. Accepts the usual JMH command line options, but always adds the GC
+// profiler, so that every run reports the allocation rate (gc.alloc.rate.norm = bytes per call)
+// next to the timings. Two builds can be compared with: -rf json -rff result.json
+public class BenchmarkMain {
+
+  //----
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+
+}
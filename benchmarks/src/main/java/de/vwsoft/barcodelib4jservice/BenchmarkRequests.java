@@ -0,0 +1,92 @@
+package de.vwsoft.barcodelib4jservice;
+
+import de.vwsoft.barcodelib4j.image.ImageColorModel;
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+import de.vwsoft.barcodelib4j.oned.BarcodeType;
+import de.vwsoft.barcodelib4j.twod.TwoDType;
+
+
+// Builds the requests and contents used by the benchmarks. Fields that are not parameterized are
+// passed as 'null', so the request constructors apply the same defaults as for a JSON request.
+final class BenchmarkRequests {
+
+  //----
+  private BenchmarkRequests() {
+  }
+
+
+  //---- Returns a valid content of roughly the given length for the type
+  static String content1D(BarcodeType type, int length) {
+    return switch (type.name()) {
+      case "EAN13" -> "400638133393";
+      case "EAN8" -> "9638507";
+      case "UPCA" -> "03600029145";
+      case "EAN128" -> gs1Content(length, '\n');
+      default -> digits(length);
+    };
+  }
+
+
+  //----
+  static String content2D(TwoDType type, int length) {
+    return type.isGS1() ? gs1Content(length, '\n') : text(length);
+  }
+
+
+  //---- GTIN plus a batch/lot number that fills up the requested length
+  static String gs1Content(int length, char separator) {
+    final int lotLength = Math.max(1, Math.min(20, length - 22));
+    return "(01)09501101530003" + separator + "(10)" + digits(lotLength);
+  }
+
+
+  //----
+  static String digits(int length) {
+    StringBuilder sb = new StringBuilder(length);
+    for (int i=0; i<length; i++)
+      sb.append((char)('0' + (i * 7 + 3) % 10));
+    return sb.toString();
+  }
+
+
+  //----
+  static String text(int length) {
+    final String alphabet = "The quick brown fox jumps over the lazy dog 0123456789 ";
+    StringBuilder sb = new StringBuilder(length);
+    for (int i=0; i<length; i++)
+      sb.append(alphabet.charAt(i % alphabet.length()));
+    return sb.toString();
+  }
+
+
+  //----
+  static BarcodeRequest1D request1D(BarcodeType type, String content, double size,
+      ImageFormat format, ImageColorModel colorModel, int dpi) {
+    return new BarcodeRequest1D(content, size * 2.0, size, null, null, null, null, format, null,
+        null, null, colorModel, null, null, null, null, dpi, type, true, null, null, null, null,
+        null, null, null, null, null);
+  }
+
+
+  //----
+  static BarcodeRequest2D request2D(TwoDType type, String content, double size,
+      ImageFormat format, ImageColorModel colorModel, int dpi) {
+    return request2D(type, content, size, format, colorModel, dpi, null);
+  }
+
+
+  //---- 'compactSVG' = null: the default (BarExporter output)
+  static BarcodeRequest2D request2D(TwoDType type, String content, double size,
+      ImageFormat format, ImageColorModel colorModel, int dpi, Boolean compactSVG) {
+    return new BarcodeRequest2D(content, size, size, null, null, null, null, format, null,
+        compactSVG, null, colorModel, null, null, null, null, dpi, type, null, null, null, null,
+        null, null, null, null, null, null, null);
+  }
+
+
+  //---- A renderer without symbol cache, so that every call runs the complete pipeline
+  static BarcodeRenderer uncachedRenderer() {
+    return new BarcodeRenderer(new FontRegistry(""), 0, 1 << 20, 0, true, 3);
+  }
+
+}
@@ -0,0 +1,78 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.vwsoft.barcodelib4j.image.ImageColorModel;
+import de.vwsoft.barcodelib4j.oned.ImplCode128;
+
+
+// Stage 2: The preprocessing steps of BarcodeRenderer - GS1 line handling and color conversion -
+// and the GS1 parsing done by /validate/gs1
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreprocessingBenchmark {
+
+  @Param({ "1", "4", "16" })
+  public int gs1Lines;
+
+  private String gs1Content;
+  private final List<Integer> rgb = List.of(20, 40, 60);
+  private final List<Integer> cmyk = List.of(0, 20, 40, 100);
+
+
+  //----
+  @Setup
+  public void setup() {
+    StringBuilder sb = new StringBuilder();
+    for (int i=0; i<gs1Lines; i++)
+      sb.append(i == 0 ? "(01)09501101530003" : "(10)" + BenchmarkRequests.digits(8)).append('\n');
+    sb.append("(21)\n"); // An AI without data, which is dropped
+    gs1Content = sb.toString();
+  }
+
+
+  //----
+  @Benchmark
+  public String joinGS1Lines() {
+    return GS1Parser.joinLines(gs1Content, ImplCode128.FNC1);
+  }
+
+
+  //----
+  @Benchmark
+  public Object parseGS1() {
+    return GS1Parser.parse(gs1Content);
+  }
+
+
+  //----
+  @Benchmark
+  public Object toCompoundColorRGB() {
+    return BarcodeRenderer.toCompoundColor(rgb, ImageColorModel.RGB);
+  }
+
+
+  //----
+  @Benchmark
+  public Object toCompoundColorCMYK() {
+    return BarcodeRenderer.toCompoundColor(cmyk, ImageColorModel.CMYK);
+  }
+
+}
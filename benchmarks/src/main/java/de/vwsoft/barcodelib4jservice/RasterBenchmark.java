@@ -0,0 +1,75 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.vwsoft.barcodelib4j.image.ImageColorModel;
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+import de.vwsoft.barcodelib4j.twod.TwoDType;
+
+
+// PNG and BMP output of 2D symbols: the direct module raster ('direct' = true) against drawing
+// into a BarExporter and encoding with ImageIO ('direct' = false). Both renderers cache the symbol,
+// so 'render' measures drawing and encoding only. The output size of both paths is printed during
+// setup, since the 1-bit output of the direct path is also much smaller.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RasterBenchmark {
+
+  @Param({ "QRCODE", "DATAMATRIX" })
+  public String type;
+
+  @Param({ "PNG", "BMP" })
+  public String format;
+
+  @Param({ "300", "1200", "2400" })
+  public int dpi;
+
+  @Param({ "true", "false" })
+  public boolean direct;
+
+  @Param({ "30" })
+  public double size;
+
+  @Param({ "64" })
+  public int contentLength;
+
+  private BarcodeRenderer renderer;
+  private BarcodeRequest request;
+
+
+  //----
+  @Setup
+  public void setup() throws Exception {
+    renderer = new BarcodeRenderer(new FontRegistry(""), 0, 1 << 20, 16, direct, 3);
+    TwoDType twoDType = TwoDType.valueOf(type);
+    request = BenchmarkRequests.request2D(twoDType,
+        BenchmarkRequests.content2D(twoDType, contentLength), size, ImageFormat.valueOf(format),
+        ImageColorModel.RGB, dpi);
+    System.out.printf("%n%s %s %d dpi, direct=%b: %d bytes%n", type, format, dpi, direct,
+        renderer.render(request, false).length);
+  }
+
+
+  //----
+  @Benchmark
+  public byte[] render() throws Exception {
+    return renderer.render(request, false);
+  }
+
+}
@@ -0,0 +1,106 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.vwsoft.barcodelib4j.image.ImageColorModel;
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+import de.vwsoft.barcodelib4j.oned.BarcodeType;
+import de.vwsoft.barcodelib4j.twod.TwoDType;
+
+
+// Stages 4 and 5: Drawing into a BarExporter, and BarExporter.write for each output format and
+// color model. 'draw' uses the symbol cache, so for 2D codes it measures drawing only (1D codes
+// include Barcode.newInstance, see SymbolBenchmark). 'render' covers the complete pipeline of
+// BarcodeRenderer without any cache. Parameterized by symbol type, output format, color model,
+// resolution and size (in mm). The full matrix takes long - narrow it down with -p, for example:
+// java -jar target/benchmarks.jar RenderBenchmark -p type=QRCODE -p format=PNG,SVG
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+
+  @Param({ "EAN13", "EAN128", "QRCODE", "DATAMATRIX", "PDF417" })
+  public String type;
+
+  @Param({ "PNG", "SVG", "PDF", "EPS", "BMP", "JPG" })
+  public String format;
+
+  @Param({ "RGB", "CMYK" })
+  public String colorModel;
+
+  @Param({ "300", "1200" })
+  public int dpi;
+
+  @Param({ "30" })
+  public double size;
+
+  @Param({ "32" })
+  public int contentLength;
+
+  private BarcodeRenderer renderer;
+  private BarcodeRenderer cachingRenderer;
+  private BarcodeRequest request;
+  private DrawnBarcode drawnBarcode;
+  private final OutputStream sink = OutputStream.nullOutputStream();
+
+
+  //----
+  @Setup
+  public void setup() throws Exception {
+    renderer = BenchmarkRequests.uncachedRenderer();
+    cachingRenderer = new BarcodeRenderer(new FontRegistry(""), 0, 1 << 20, 16, true, 3);
+    ImageFormat imageFormat = ImageFormat.valueOf(format);
+    ImageColorModel imageColorModel = ImageColorModel.valueOf(colorModel);
+    if (type.equals("EAN13") || type.equals("EAN128")) {
+      BarcodeType barcodeType = BarcodeType.valueOf(type);
+      request = BenchmarkRequests.request1D(barcodeType,
+          BenchmarkRequests.content1D(barcodeType, contentLength), size, imageFormat,
+          imageColorModel, dpi);
+    } else {
+      TwoDType twoDType = TwoDType.valueOf(type);
+      request = BenchmarkRequests.request2D(twoDType,
+          BenchmarkRequests.content2D(twoDType, contentLength), size, imageFormat,
+          imageColorModel, dpi);
+    }
+    drawnBarcode = renderer.draw(request, false, new RenderTrace());
+  }
+
+
+  //----
+  @Benchmark
+  public Object draw() throws Exception {
+    return cachingRenderer.draw(request, false, new RenderTrace());
+  }
+
+
+  //----
+  @Benchmark
+  public OutputStream write() throws Exception {
+    drawnBarcode.writeTo(sink);
+    return sink;
+  }
+
+
+  //----
+  @Benchmark
+  public byte[] render() throws Exception {
+    return renderer.render(request, false);
+  }
+
+}
@@ -0,0 +1,73 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+
+// Stage 1: JSON deserialization and bean validation of BarcodeRequest1D/BarcodeRequest2D,
+// as done by @Valid @RequestBody in BarcodeController
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBindingBenchmark {
+
+  @Param({ "16", "256" })
+  public int contentLength;
+
+  private ObjectMapper objectMapper;
+  private Validator validator;
+  private byte[] json1D;
+  private byte[] json2D;
+
+
+  //----
+  @Setup
+  public void setup() throws Exception {
+    objectMapper = Jackson2ObjectMapperBuilder.json().build(); // Same defaults as Spring Boot
+    validator = Validation.buildDefaultValidatorFactory().getValidator();
+    json1D = objectMapper.writeValueAsBytes(Map.of(
+        "type", "CODE128", "content", BenchmarkRequests.digits(contentLength),
+        "width", 60.0, "height", 20.0, "format", "PNG", "dpi", 300,
+        "foreground", List.of(0, 0, 0), "background", List.of(255, 255, 255)));
+    json2D = objectMapper.writeValueAsBytes(Map.of(
+        "type", "QRCODE", "content", BenchmarkRequests.text(contentLength),
+        "width", 30.0, "height", 30.0, "format", "SVG", "qrErrorCorrection", "M"));
+  }
+
+
+  //----
+  @Benchmark
+  public Object bindAndValidate1D() throws Exception {
+    BarcodeRequest1D r = objectMapper.readValue(json1D, BarcodeRequest1D.class);
+    return validator.validate(r);
+  }
+
+
+  //----
+  @Benchmark
+  public Object bindAndValidate2D() throws Exception {
+    BarcodeRequest2D r = objectMapper.readValue(json2D, BarcodeRequest2D.class);
+    return validator.validate(r);
+  }
+
+}
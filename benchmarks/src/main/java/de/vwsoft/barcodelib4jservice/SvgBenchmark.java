@@ -0,0 +1,70 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.vwsoft.barcodelib4j.image.ImageColorModel;
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+import de.vwsoft.barcodelib4j.twod.TwoDType;
+
+
+// SVG output of 2D symbols: the compact single-path document ('compact' = true, request field
+// 'formatCompactSVG') against the BarExporter output ('compact' = false). The symbol is cached, so
+// 'render' measures drawing and encoding only. The document size of both variants is printed during
+// setup, which together with the render time gives the figures to compare per type. PDF417 is not
+// supported by the compact writer (rows are taller than wide) and shows the fallback.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SvgBenchmark {
+
+  @Param({ "QRCODE", "DATAMATRIX", "AZTEC", "PDF417" })
+  public String type;
+
+  @Param({ "true", "false" })
+  public boolean compact;
+
+  @Param({ "64", "512" })
+  public int contentLength;
+
+  @Param({ "30" })
+  public double size;
+
+  private BarcodeRenderer renderer;
+  private BarcodeRequest request;
+
+
+  //----
+  @Setup
+  public void setup() throws Exception {
+    renderer = new BarcodeRenderer(new FontRegistry(""), 0, 1 << 20, 16, true, 3);
+    TwoDType twoDType = TwoDType.valueOf(type);
+    request = BenchmarkRequests.request2D(twoDType,
+        BenchmarkRequests.content2D(twoDType, contentLength), size, ImageFormat.SVG,
+        ImageColorModel.RGB, 0, compact);
+    System.out.printf("%n%s %d chars, compact=%b: %d bytes%n", type, contentLength, compact,
+        renderer.render(request, false).length);
+  }
+
+
+  //----
+  @Benchmark
+  public byte[] render() throws Exception {
+    return renderer.render(request, false);
+  }
+
+}
@@ -0,0 +1,90 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.vwsoft.barcodelib4j.oned.Barcode;
+import de.vwsoft.barcodelib4j.oned.BarcodeType;
+import de.vwsoft.barcodelib4j.oned.ImplCode128;
+import de.vwsoft.barcodelib4j.twod.TwoDCode;
+import de.vwsoft.barcodelib4j.twod.TwoDType;
+
+
+// Stage 3: Barcode.newInstance (1D) and TwoDCode.buildSymbol (2D), which validate the content and
+// compute check digits or error correction
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbolBenchmark {
+
+  //----
+  @State(Scope.Benchmark)
+  public static class Input1D {
+    @Param({ "EAN13", "CODE128", "EAN128" })
+    public String type;
+
+    @Param({ "16", "64" })
+    public int contentLength;
+
+    BarcodeType barcodeType;
+    String content;
+
+    @Setup
+    public void setup() {
+      barcodeType = BarcodeType.valueOf(type);
+      content = BenchmarkRequests.content1D(barcodeType, contentLength);
+      if (barcodeType == BarcodeType.EAN128)
+        content = GS1Parser.joinLines(content, ImplCode128.FNC1);
+    }
+  }
+
+
+  //----
+  @State(Scope.Benchmark)
+  public static class Input2D {
+    @Param({ "QRCODE", "DATAMATRIX", "PDF417", "AZTEC" })
+    public String type;
+
+    @Param({ "16", "256" })
+    public int contentLength;
+
+    TwoDType twoDType;
+    String content;
+
+    @Setup
+    public void setup() {
+      twoDType = TwoDType.valueOf(type);
+      content = BenchmarkRequests.content2D(twoDType, contentLength);
+    }
+  }
+
+
+  //----
+  @Benchmark
+  public Object newInstance1D(Input1D in) throws Exception {
+    return Barcode.newInstance(in.barcodeType, in.content, true, false);
+  }
+
+
+  //----
+  @Benchmark
+  public Object buildSymbol2D(Input2D in) throws Exception {
+    TwoDCode twoDCode = new TwoDCode(in.twoDType);
+    twoDCode.setContent(in.content);
+    return twoDCode.buildSymbol();
+  }
+
+}
@@ -0,0 +1,176 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+
+import de.vwsoft.barcodelib4jservice.grpc.Barcode2D;
+import de.vwsoft.barcodelib4jservice.grpc.BarcodeServiceGrpc;
+import de.vwsoft.barcodelib4jservice.grpc.RenderRequest;
+import de.vwsoft.barcodelib4jservice.grpc.RenderResponse;
+
+
+// Compares the transports of a running service on the same machine: POST /create2d (JSON over
+// HTTP/1.1 keep-alive), the unary gRPC Render call and a single RenderStream. Each transport
+// renders the same number of QR codes with the same concurrency; contents are distinct per
+// transport, so that none is answered from the render cache filled by another. Throughput and
+// latency percentiles are printed per transport. For RenderStream, the server's
+// 'grpc.stream.window' takes the place of the concurrency.
+//
+//   java -cp benchmarks/target/benchmarks.jar de.vwsoft.barcodelib4jservice.TransportComparison
+//       [host] [rest port] [grpc port] [requests] [concurrency]
+public class TransportComparison {
+
+  //----
+  public static void main(String[] args) throws Exception {
+    final String host = args.length > 0 ? args[0] : "localhost";
+    final int restPort = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+    final int grpcPort = args.length > 2 ? Integer.parseInt(args[2]) : 9090;
+    final int requests = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+    final int concurrency = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+
+    final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    final URI uri = URI.create("http://" + host + ':' + restPort + "/create2d");
+    report("REST /create2d", requests, run(requests, concurrency, i -> {
+      HttpRequest request = HttpRequest.newBuilder(uri)
+          .header("Content-Type", "application/json")
+          .POST(HttpRequest.BodyPublishers.ofString("{\"type\":\"QRCODE\",\"format\":\"PNG\","
+              + "\"content\":\"rest-" + i + "\",\"width\":30,\"height\":30,\"dpi\":300}"))
+          .build();
+      return http.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode() == 200;
+    }));
+
+    final ManagedChannel channel =
+        ManagedChannelBuilder.forAddress(host, grpcPort).usePlaintext().build();
+    try {
+      final BarcodeServiceGrpc.BarcodeServiceBlockingStub stub =
+          BarcodeServiceGrpc.newBlockingStub(channel);
+      report("gRPC Render", requests, run(requests, concurrency,
+          i -> stub.render(request("unary-", i)).getStatus() == 200));
+      report("gRPC RenderStream", requests, stream(channel, requests));
+    } finally {
+      channel.shutdownNow();
+    }
+  }
+
+
+  //----
+  private static RenderRequest request(String prefix, int i) {
+    return RenderRequest.newBuilder()
+        .setId(Integer.toString(i))
+        .setBarcode2D(Barcode2D.newBuilder().setType("QRCODE").setFormat("PNG")
+            .setContent(prefix + i).setWidth(30.0).setHeight(30.0).setDpi(300))
+        .build();
+  }
+
+
+  //---- Closed model: 'concurrency' threads each send their next request when the previous one
+  //     is answered. Returns the latencies in nanoseconds, negative for failed requests, plus the
+  //     total elapsed time as the last element.
+  private static long[] run(int requests, int concurrency, Call call) throws InterruptedException {
+    final long[] result = new long[requests + 1];
+    final AtomicInteger next = new AtomicInteger();
+    final Thread[] threads = new Thread[concurrency];
+    final long start = System.nanoTime();
+    for (int t=0; t<concurrency; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i=next.getAndIncrement(); i<requests; i=next.getAndIncrement()) {
+          long t0 = System.nanoTime();
+          boolean ok;
+          try {
+            ok = call.send(i);
+          } catch (Exception e) {
+            ok = false;
+          }
+          result[i] = (ok ? 1 : -1) * (System.nanoTime() - t0);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads)
+      thread.join();
+    result[requests] = System.nanoTime() - start;
+    return result;
+  }
+
+
+  //---- All requests on one stream, sent as fast as the transport accepts them
+  private static long[] stream(ManagedChannel channel, int requests) throws InterruptedException {
+    final long[] result = new long[requests + 1];
+    final long[] sent = new long[requests];
+    final CountDownLatch done = new CountDownLatch(1);
+    final long start = System.nanoTime();
+    BarcodeServiceGrpc.newStub(channel).renderStream(
+        new ClientResponseObserver<RenderRequest,RenderResponse>() {
+          private int next;
+
+          @Override // Callbacks of a call are serialized, so 'next' and 'sent' need no lock
+          public void beforeStart(ClientCallStreamObserver<RenderRequest> requestStream) {
+            requestStream.setOnReadyHandler(() -> {
+              while (requestStream.isReady() && next < requests) {
+                sent[next] = System.nanoTime();
+                requestStream.onNext(request("stream-", next++));
+              }
+              if (next == requests) {
+                next++;
+                requestStream.onCompleted();
+              }
+            });
+          }
+
+          @Override
+          public void onNext(RenderResponse response) {
+            int i = Integer.parseInt(response.getId());
+            result[i] = (response.getStatus() == 200 ? 1 : -1) * (System.nanoTime() - sent[i]);
+          }
+
+          @Override
+          public void onError(Throwable t) {
+            System.err.println("RenderStream failed: " + t);
+            done.countDown();
+          }
+
+          @Override
+          public void onCompleted() {
+            done.countDown();
+          }
+        });
+    done.await();
+    result[requests] = System.nanoTime() - start;
+    return result;
+  }
+
+
+  //----
+  private static void report(String name, int requests, long[] result) {
+    long[] latencies = new long[requests];
+    int failed = 0;
+    for (int i=0; i<requests; i++) {
+      latencies[i] = Math.abs(result[i]);
+      if (result[i] <= 0)
+        failed++;
+    }
+    Arrays.sort(latencies);
+    System.out.printf("%-18s %9.0f req/s   p50 %7.2f ms   p99 %7.2f ms   max %7.2f ms   "
+        + "failed %d%n", name, requests * 1e9 / result[requests],
+        latencies[requests / 2] / 1e6, latencies[(int)(requests * 0.99)] / 1e6,
+        latencies[requests - 1] / 1e6, failed);
+  }
+
+
+  //----
+  @FunctionalInterface
+  private interface Call {
+    boolean send(int i) throws Exception;
+  }
+
+}
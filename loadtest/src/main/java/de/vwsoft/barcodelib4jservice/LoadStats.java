@@ -0,0 +1,87 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+
+// Results of one load test phase, in total and per scenario entry: HdrHistograms of the latency
+// (open model: from the intended start time of the request, so that queueing in an overloaded
+// service is included instead of being hidden by coordinated omission) and of the service time
+// (from the actual send), plus the count of each HTTP status or exception. Recorded concurrently
+// by the completion callbacks of many requests.
+final class LoadStats {
+  private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+  private final Group total = new Group();
+  private final Map<String,Group> entries = new ConcurrentHashMap<>();
+
+
+  //---- 'outcome' is the HTTP status or the simple name of the exception
+  void record(String entryName, String outcome, long latencyNanos, long serviceNanos) {
+    total.record(outcome, latencyNanos, serviceNanos);
+    entries.computeIfAbsent(entryName, name -> new Group())
+        .record(outcome, latencyNanos, serviceNanos);
+  }
+
+
+  //---- The report, with the throughput over the given elapsed time
+  Map<String,Object> toReport(double elapsedSeconds, boolean withServiceTime) {
+    Map<String,Object> report = total.toReport(elapsedSeconds, withServiceTime);
+    Map<String,Object> byEntry = new TreeMap<>();
+    entries.forEach((name, group) -> byEntry.put(name,
+        group.toReport(elapsedSeconds, withServiceTime)));
+    report.put("requests", byEntry);
+    return report;
+  }
+
+
+  //----
+  private static final class Group {
+    final Histogram latency = new ConcurrentHistogram(MAX_MICROS, 3);
+    final Histogram serviceTime = new ConcurrentHistogram(MAX_MICROS, 3);
+    final Map<String,LongAdder> outcomes = new ConcurrentHashMap<>();
+
+    void record(String outcome, long latencyNanos, long serviceNanos) {
+      latency.recordValue(Math.min(MAX_MICROS, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+      serviceTime.recordValue(Math.min(MAX_MICROS, TimeUnit.NANOSECONDS.toMicros(serviceNanos)));
+      outcomes.computeIfAbsent(outcome, o -> new LongAdder()).increment();
+    }
+
+    Map<String,Object> toReport(double elapsedSeconds, boolean withServiceTime) {
+      final long count = latency.getTotalCount();
+      final long ok = outcomes.containsKey("200") ? outcomes.get("200").sum() : 0L;
+      Map<String,Object> report = new LinkedHashMap<>();
+      report.put("count", count);
+      report.put("errors", count - ok);
+      report.put("errorRate", count > 0 ? (double)(count - ok) / count : 0.0);
+      report.put("throughputPerSecond", count / elapsedSeconds);
+      Map<String,Long> byOutcome = new TreeMap<>();
+      outcomes.forEach((outcome, n) -> byOutcome.put(outcome, n.sum()));
+      report.put("outcomes", byOutcome);
+      report.put("latencyMicros", percentiles(latency));
+      if (withServiceTime)
+        report.put("serviceTimeMicros", percentiles(serviceTime));
+      return report;
+    }
+
+    static Map<String,Object> percentiles(Histogram h) {
+      Map<String,Object> p = new LinkedHashMap<>();
+      p.put("min", h.getTotalCount() > 0 ? h.getMinValue() : 0L);
+      p.put("p50", h.getValueAtPercentile(50.0));
+      p.put("p90", h.getValueAtPercentile(90.0));
+      p.put("p99", h.getValueAtPercentile(99.0));
+      p.put("p99.9", h.getValueAtPercentile(99.9));
+      p.put("max", h.getMaxValue());
+      p.put("mean", h.getMean());
+      return p;
+    }
+  }
+
+}
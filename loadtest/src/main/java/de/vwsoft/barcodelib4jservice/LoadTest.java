@@ -0,0 +1,237 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+
+// Load generator for a locally running service (see Scenario for the settings). Sends the weighted
+// request mix of a scenario file over HTTP/1.1 keep-alive connections, first for the warm-up, then
+// for the measured duration, and reports the latency percentiles (HdrHistogram), throughput and
+// error rates in total and per request as JSON. Uses nothing but the loopback connection to the
+// service, so that it runs on a single machine without network access.
+//
+//   java -jar loadtest/target/loadtest.jar loadtest/scenarios/production-mix.json [name=value ...]
+//
+// Exits with status 1 if the service could not be reached.
+public class LoadTest {
+  private final Scenario scenario;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Scenario.Picker picker;
+  private final HttpClient client;
+  private final ExecutorService executor;
+
+
+  //----
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: LoadTest <scenario.json> [name=value ...]");
+      System.exit(2);
+    }
+    Scenario scenario = Scenario.load(Path.of(args[0]),
+        Arrays.asList(args).subList(1, args.length), new ObjectMapper());
+    LoadTest loadTest = new LoadTest(scenario);
+    try {
+      if (!loadTest.awaitService(Duration.ofSeconds(60))) {
+        System.err.println("Service not ready at " + scenario.baseUrl());
+        System.exit(1);
+      }
+      Map<String,Object> report = loadTest.run();
+      ObjectMapper writer = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+      if (scenario.report() == null || scenario.report().isEmpty())
+        System.out.println(writer.writeValueAsString(report));
+      else
+        writer.writeValue(Path.of(scenario.report()).toFile(), report);
+    } finally {
+      loadTest.executor.shutdownNow();
+    }
+  }
+
+
+  //----
+  LoadTest(Scenario scenario) {
+    this.scenario = scenario;
+    this.picker = new Scenario.Picker(scenario.requests());
+    final AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(
+        Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+          Thread t = new Thread(runnable, "loadtest-" + threadNumber.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+    this.client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(scenario.timeoutSeconds()))
+        .executor(executor)
+        .build();
+  }
+
+
+  //---- Polls the readiness probe until it answers HTTP 200, i.e. the service has started and
+  //     finished its own warm-up
+  boolean awaitService(Duration timeout) throws InterruptedException {
+    final long deadline = System.nanoTime() + timeout.toNanos();
+    final HttpRequest health = HttpRequest.newBuilder(URI.create(scenario.baseUrl() + "/health"))
+        .timeout(Duration.ofSeconds(5)).build();
+    while (System.nanoTime() < deadline) {
+      try {
+        if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200)
+          return true;
+      } catch (IOException e) { // Not listening yet
+      }
+      Thread.sleep(500L);
+    }
+    return false;
+  }
+
+
+  //---- Runs the warm-up and the measured phase and returns the report
+  Map<String,Object> run() throws InterruptedException {
+    if (scenario.warmupSeconds() > 0)
+      runPhase(scenario.warmupSeconds(), new LoadStats());
+    final LoadStats stats = new LoadStats();
+    final Instant start = Instant.now();
+    final long elapsedNanos = runPhase(scenario.durationSeconds(), stats);
+
+    Map<String,Object> report = new LinkedHashMap<>();
+    report.put("start", start.toString());
+    report.put("baseUrl", scenario.baseUrl());
+    report.put("model", scenario.model());
+    if (isOpen())
+      report.put("targetRatePerSecond", scenario.rate());
+    report.put("concurrency", scenario.concurrency());
+    report.put("durationSeconds", scenario.durationSeconds());
+    report.put("elapsedSeconds", elapsedNanos / 1e9);
+    report.putAll(stats.toReport(elapsedNanos / 1e9, isOpen()));
+    return report;
+  }
+
+
+  //---- Returns the elapsed time, including the requests still in flight at the end
+  private long runPhase(int seconds, LoadStats stats) throws InterruptedException {
+    final long start = System.nanoTime();
+    final long end = start + seconds * 1_000_000_000L;
+    if (isOpen())
+      runOpen(start, end, stats);
+    else
+      runClosed(end, stats);
+    return System.nanoTime() - start;
+  }
+
+
+  //---- Constant arrival rate. The latency of each request is measured from the time it was due
+  //     to start, so that waiting for a free slot (because the service is slower than the rate)
+  //     is part of it, as it would be for independent clients.
+  private void runOpen(long start, long end, LoadStats stats) throws InterruptedException {
+    final int concurrency = scenario.concurrency();
+    final Semaphore slots = new Semaphore(concurrency);
+    final SplittableRandom random = new SplittableRandom(scenario.seed());
+    final double intervalNanos = 1e9 / scenario.rate();
+    for (long i=0; ; i++) {
+      final long intended = start + (long)(i * intervalNanos);
+      if (intended >= end)
+        break;
+      long wait;
+      while ((wait = intended - System.nanoTime()) > 0)
+        LockSupport.parkNanos(wait);
+
+      final int index = picker.pick(random.nextInt(picker.totalWeight()));
+      final HttpRequest request = newRequest(index);
+      slots.acquire();
+      final long sent = System.nanoTime();
+      client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+          .whenComplete((response, error) -> {
+            final long now = System.nanoTime();
+            stats.record(picker.entry(index).name(), outcome(response, error),
+                now - intended, now - sent);
+            slots.release();
+          });
+    }
+    slots.acquire(concurrency); // Wait for the requests in flight
+    slots.release(concurrency);
+  }
+
+
+  //---- Each client sends its next request as soon as the previous one is answered
+  private void runClosed(long end, LoadStats stats) throws InterruptedException {
+    Thread[] clients = new Thread[scenario.concurrency()];
+    for (int c=0; c<clients.length; c++) {
+      final SplittableRandom random = new SplittableRandom(scenario.seed() + c);
+      clients[c] = new Thread(() -> {
+        while (System.nanoTime() < end) {
+          final int index = picker.pick(random.nextInt(picker.totalWeight()));
+          final HttpRequest request = newRequest(index);
+          final long sent = System.nanoTime();
+          HttpResponse<Void> response = null;
+          Throwable error = null;
+          try {
+            response = client.send(request, HttpResponse.BodyHandlers.discarding());
+          } catch (IOException e) {
+            error = e;
+          } catch (InterruptedException e) {
+            return;
+          }
+          final long now = System.nanoTime();
+          stats.record(picker.entry(index).name(), outcome(response, error), now - sent,
+              now - sent);
+        }
+      }, "loadtest-client-" + (c + 1));
+      clients[c].start();
+    }
+    for (Thread client : clients)
+      client.join();
+  }
+
+
+  //----
+  private HttpRequest newRequest(int index) {
+    final Scenario.Entry entry = picker.entry(index);
+    final byte[] body;
+    try {
+      body = entry.body(objectMapper, picker.next(index));
+    } catch (IOException e) { // Templates are plain JSON values
+      throw new IllegalStateException(e);
+    }
+    return HttpRequest.newBuilder(URI.create(scenario.baseUrl() + entry.path()))
+        .timeout(Duration.ofSeconds(scenario.timeoutSeconds()))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+        .build();
+  }
+
+
+  //---- HTTP status, or the simple name of the exception
+  private static String outcome(HttpResponse<?> response, Throwable error) {
+    if (response != null)
+      return Integer.toString(response.statusCode());
+    Throwable cause = error instanceof CompletionException && error.getCause() != null ?
+        error.getCause() : error;
+    return cause.getClass().getSimpleName();
+  }
+
+
+  //----
+  private boolean isOpen() {
+    return "open".equals(scenario.model());
+  }
+
+}
@@ -0,0 +1,184 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+
+// A load test scenario, read from a JSON file. Settings can be overridden on the command line
+// ("rate=800"). The requests are JSON bodies of /create1d and /create2d, picked by weight. In the
+// content of a template, "{n}" is replaced by a running number per request and "{n:6}" by the
+// same number modulo 10^6 with leading zeros, so that every request has a distinct content (and so
+// is not answered from the render cache) while fixed-length contents like EAN-13 stay valid.
+//
+//   model            "open": requests start at a constant 'rate' per second, regardless of how
+//                    fast they are answered; at most 'concurrency' are in flight.
+//                    "closed": 'concurrency' clients each send their next request when the
+//                    previous one is answered.
+//   warmupSeconds    Run before the measurement, not reported
+//   durationSeconds  Measured run
+//   timeoutSeconds   Requests not answered in time count as errors
+//   report           File the JSON report is written to; empty = standard output
+public record Scenario(
+    String baseUrl,
+    String model,
+    double rate,
+    int concurrency,
+    int warmupSeconds,
+    int durationSeconds,
+    int timeoutSeconds,
+    long seed,
+    String report,
+    List<Entry> requests) {
+
+
+  //---- Defaults for settings missing in the file
+  public Scenario {
+    if (baseUrl == null)
+      baseUrl = "http://localhost:8080";
+    if (model == null)
+      model = "open";
+    if (concurrency == 0)
+      concurrency = 64;
+    if (durationSeconds == 0)
+      durationSeconds = 60;
+    if (timeoutSeconds == 0)
+      timeoutSeconds = 10;
+  }
+
+
+  //---- 'path' is the request path (e.g. "/create2d"), 'template' the JSON body
+  public record Entry(String name, int weight, String path, Map<String,Object> template) {
+
+    //---- The body of the n-th request of this entry
+    byte[] body(ObjectMapper objectMapper, long n) throws IOException {
+      Map<String,Object> body = new HashMap<>(template);
+      if (body.get("content") instanceof String content)
+        body.put("content", expand(content, n));
+      return objectMapper.writeValueAsBytes(body);
+    }
+  }
+
+
+  //---- Reads the file and applies the overrides ("name=value")
+  static Scenario load(Path file, List<String> overrides, ObjectMapper objectMapper)
+      throws IOException {
+    ObjectNode node = (ObjectNode)objectMapper.readTree(file.toFile());
+    for (String override : overrides) {
+      int eq = override.indexOf('=');
+      if (eq <= 0)
+        throw new IllegalArgumentException("Override must be name=value: " + override);
+      String value = override.substring(eq + 1);
+      JsonNode parsed;
+      try {
+        parsed = objectMapper.readTree(value);
+      } catch (IOException e) { // Not a JSON literal - take it as a string
+        parsed = null;
+      }
+      if (parsed != null && parsed.isValueNode())
+        node.set(override.substring(0, eq), parsed);
+      else
+        node.put(override.substring(0, eq), value);
+    }
+    return objectMapper.treeToValue(node, Scenario.class).validated();
+  }
+
+
+  //----
+  private Scenario validated() {
+    URI.create(baseUrl); // Throws IllegalArgumentException if malformed
+    if (!"open".equals(model) && !"closed".equals(model))
+      throw new IllegalArgumentException("Model must be \"open\" or \"closed\"");
+    if ("open".equals(model) && rate <= 0.0)
+      throw new IllegalArgumentException("The open model requires a rate > 0");
+    if (concurrency < 1 || durationSeconds < 1 || warmupSeconds < 0 || timeoutSeconds < 1)
+      throw new IllegalArgumentException("Invalid concurrency, duration, warm-up or timeout");
+    if (requests == null || requests.isEmpty()
+        || requests.stream().anyMatch(e -> e.weight < 0 || e.path == null || e.template == null)
+        || requests.stream().mapToInt(Entry::weight).sum() == 0)
+      throw new IllegalArgumentException("Requests need a path, a template and weights > 0");
+    return this;
+  }
+
+
+  //---- Replaces "{n}" and "{n:width}"
+  static String expand(String content, long n) {
+    int start = content.indexOf("{n");
+    if (start < 0)
+      return content;
+    StringBuilder sb = new StringBuilder(content.length() + 16);
+    int from = 0;
+    while (start >= 0) {
+      int end = content.indexOf('}', start);
+      if (end < 0)
+        break;
+      String spec = content.substring(start + 2, end);
+      final String number;
+      if (spec.isEmpty()) {
+        number = Long.toString(n);
+      } else if (spec.startsWith(":")) {
+        int width = Integer.parseInt(spec.substring(1));
+        long modulo = 1L;
+        for (int i=0; i<width && modulo < Long.MAX_VALUE / 10; i++)
+          modulo *= 10;
+        number = String.format("%0" + width + "d", n % modulo);
+      } else { // Not a placeholder
+        start = content.indexOf("{n", start + 2);
+        continue;
+      }
+      sb.append(content, from, start).append(number);
+      from = end + 1;
+      start = content.indexOf("{n", from);
+    }
+    return sb.append(content, from, content.length()).toString();
+  }
+
+
+  //---- Picks entries by weight
+  static final class Picker {
+    private final List<Entry> entries;
+    private final int[] cumulative;
+    private final AtomicLong[] counters;
+
+    Picker(List<Entry> entries) {
+      this.entries = entries;
+      this.cumulative = new int[entries.size()];
+      this.counters = new AtomicLong[entries.size()];
+      int sum = 0;
+      for (int i=0; i<cumulative.length; i++) {
+        sum += entries.get(i).weight;
+        cumulative[i] = sum;
+        counters[i] = new AtomicLong();
+      }
+    }
+
+    //---- Index of the entry for a random number in [0, total weight)
+    int pick(int random) {
+      int i = 0;
+      while (cumulative[i] <= random)
+        i++;
+      return i;
+    }
+
+    int totalWeight() {
+      return cumulative[cumulative.length - 1];
+    }
+
+    Entry entry(int index) {
+      return entries.get(index);
+    }
+
+    long next(int index) {
+      return counters[index].getAndIncrement();
+    }
+  }
+
+}
@@ -1,38 +1,33 @@
 package de.vwsoft.barcodelib4jservice;
 
-import java.awt.Font;
-import java.awt.Graphics2D;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Locale;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.SortedMap;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
-import de.vwsoft.barcodelib4j.image.BarExporter;
-import de.vwsoft.barcodelib4j.image.CompoundColor;
-import de.vwsoft.barcodelib4j.image.ImageColorModel;
 import de.vwsoft.barcodelib4j.image.ImageFormat;
-import de.vwsoft.barcodelib4j.oned.Barcode;
-import de.vwsoft.barcodelib4j.oned.BarcodeException;
 import de.vwsoft.barcodelib4j.oned.BarcodeType;
-import de.vwsoft.barcodelib4j.oned.GS1Validator;
-import de.vwsoft.barcodelib4j.oned.ImplCode128;
-import de.vwsoft.barcodelib4j.twod.AztecSize;
-import de.vwsoft.barcodelib4j.twod.DataMatrixSize;
-import de.vwsoft.barcodelib4j.twod.PDF417ErrorCorrection;
-import de.vwsoft.barcodelib4j.twod.PDF417Size;
-import de.vwsoft.barcodelib4j.twod.QRCodeVersion;
-import de.vwsoft.barcodelib4j.twod.TwoDCode;
-import de.vwsoft.barcodelib4j.twod.TwoDSymbol;
+import de.vwsoft.barcodelib4j.twod.TwoDType;
 
 
 // This controller instance is managed as a singleton by Spring. Only one instance exists for the
@@ -40,9 +35,9 @@ import de.vwsoft.barcodelib4j.twod.TwoDSymbol;
 // fields (if present) would be shared across threads and must be thread-safe.
 @RestController
 public class BarcodeController {
-  private final MediaType TEXT_PLAIN_UTF8 = MediaType.parseMediaType("text/plain; charset=UTF-8");
+  static final MediaType TEXT_PLAIN_UTF8 = MediaType.parseMediaType("text/plain; charset=UTF-8");
 
-  private final Map<ImageFormat,MediaType> CONTENT_TYPES = Map.of(
+  static final Map<ImageFormat,MediaType> CONTENT_TYPES = Map.of(
     ImageFormat.PDF, MediaType.APPLICATION_PDF,
     ImageFormat.EPS, MediaType.parseMediaType("application/postscript"),
     ImageFormat.SVG, MediaType.parseMediaType("image/svg+xml"),
@@ -50,224 +45,267 @@ public class BarcodeController {
     ImageFormat.BMP, MediaType.parseMediaType("image/bmp"),
     ImageFormat.JPG, MediaType.IMAGE_JPEG);
 
+  private final RenderService renderService;
+  private final RenderCache renderCache;
+  private final DiskCache diskCache;
+  private final QueryRequestMapper queryMapper;
+  private final ResponseCompressor compressor;
+  private final CacheControl publicCacheControl;
+
 
   //----
-  public BarcodeController() {
+  public BarcodeController(RenderService renderService, RenderCache renderCache,
+      DiskCache diskCache, QueryRequestMapper queryMapper, ResponseCompressor compressor,
+      @Value("${cache.http.max-age-seconds:31536000}") long maxAgeSeconds) {
+    this.renderService = renderService;
+    this.renderCache = renderCache;
+    this.diskCache = diskCache;
+    this.queryMapper = queryMapper;
+    this.compressor = compressor;
+    this.publicCacheControl =
+        CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic().immutable();
   }
 
 
   //----
   @PostMapping("/create1d")
   public ResponseEntity<?> createBarcode1D(@Valid @RequestBody BarcodeRequest1D r,
-      @RequestHeader(value = "Accept-Language", defaultValue = "en") String language) {
-
-    // Validate and set up common properties (used by both 1D and 2D barcodes)
-    BarExporter exporter = new BarExporter(r.marginLeft + r.width  + r.marginRight,
-                                           r.marginTop  + r.height + r.marginBottom);
-    ResponseEntity<?> errorResponse = setupCommonParams(exporter, r);
-    if (errorResponse != null)
-      return errorResponse;
-
-    // Create the barcode instance
-    final String content = r.type == BarcodeType.EAN128 ?
-        preprocessGS1Data(r.content, ImplCode128.FNC1) : r.content;
-    Barcode barcode;
-    try {
-      barcode = Barcode.newInstance(r.type, content, r.autoComplete, r.appendOptionalChecksum);
-      barcode.setAddOn(r.addon);
-    } catch (BarcodeException e) {
-      return ResponseEntity.unprocessableEntity().contentType(TEXT_PLAIN_UTF8) // HTTP 422
-          .body(language.startsWith("de") ? e.getLocalizedMessage() : e.getMessage());
-    }
-    barcode.setTextVisible(r.textVisible);
-    barcode.setTextOnTop(r.textOnTop);
-    barcode.setTextOffset(r.textOffset);
-    barcode.setFont(resolveFont(r));
-    barcode.setFontSizeAdjusted(r.fontSize == 0F);
-    barcode.setRatio(r.ratio);
-    barcode.setOptionalChecksumVisible(r.showOptionalChecksum);
-
-    // Draw the barcode
-    Graphics2D g2d = exporter.getGraphics2D();
-    barcode.draw(g2d, r.marginLeft, r.marginTop, r.width, r.height,
-        r.dpi > 0 ? 25.4 / r.dpi : 0.0, 0.0, 0.0);
-    g2d.dispose();
-
-    // Encode the barcode into the output format and return
-    return createFileResponse(exporter, r);
+      @RequestHeader(value = "Accept-Language", defaultValue = "en") String language,
+      @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+      @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+      @RequestAttribute(name = RenderTrace.ATTRIBUTE, required = false) RenderTrace trace) {
+    return createFileResponse(r, language, ifNoneMatch, acceptEncoding,
+        trace != null ? trace : new RenderTrace(), null);
   }
 
 
   //----
   @PostMapping("/create2d")
   public ResponseEntity<?> createBarcode2D(@Valid @RequestBody BarcodeRequest2D r,
-      @RequestHeader(value = "Accept-Language", defaultValue = "en") String language) {
-
-    // Validate and set up common properties (used by both 1D and 2D barcodes)
-    BarExporter exporter = new BarExporter(r.marginLeft + r.width  + r.marginRight,
-                                           r.marginTop  + r.height + r.marginBottom);
-    ResponseEntity<?> errorResponse = setupCommonParams(exporter, r);
-    if (errorResponse != null)
-      return errorResponse;
-
-    // Validate PDF417 dimensions (too complex for annotation validation)
-    if (r.pdf417Cols != 0 && (r.pdf417Cols < 1 || r.pdf417Cols > 30))
-      return ResponseEntity.badRequest().contentType(TEXT_PLAIN_UTF8) // HTTP 400
-          .body("PDF417 columns must be 0 (AUTO) or between 1 and 30");
-    if (r.pdf417Rows != 0 && (r.pdf417Rows < 3 || r.pdf417Rows > 90))
-      return ResponseEntity.badRequest().contentType(TEXT_PLAIN_UTF8) // HTTP 400
-          .body("PDF417 rows must be 0 (AUTO) or between 3 and 90");
-
-    // Localize error messages of type HTTP 422 (invalid user input)
-    final boolean useGerman = language.startsWith("de");
-    final String invalidText = useGerman ? "ung\u00FCltig" : "invalid";
-    final String notEncodableText = useGerman ? "Inhalt nicht mit Zeichensatz kodierbar" :
-                                                "Content not encodable with charset";
-
-    // Validate 'content' and 'charset'
-    String errMsg = null; // Let's see if there is an error to collect within the two if-blocks
-    String content = r.content;
-    Charset charset = null;
-    if (r.type.isGS1() || content.isEmpty()) {        // GS1 validation. Also validate empty content
-      content = preprocessGS1Data(content, (char)29); // to get localized error message "for free"
-      try {                                           // from the 'BarcodeException' class
-        content = new GS1Validator(content, (char)29).getContent();
-      } catch (BarcodeException e) {
-        errMsg = useGerman ? e.getLocalizedMessage() : e.getMessage();
-      }
-    } else if (r.charset != null) { // ECI will be inserted into the symbol
-      try {
-        charset = Charset.forName(r.charset);
-      } catch (Exception e) {
-        errMsg = notEncodableText;
-      }
-    }
+      @RequestHeader(value = "Accept-Language", defaultValue = "en") String language,
+      @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+      @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+      @RequestAttribute(name = RenderTrace.ATTRIBUTE, required = false) RenderTrace trace) {
+    return createFileResponse(r, language, ifNoneMatch, acceptEncoding,
+        trace != null ? trace : new RenderTrace(), null);
+  }
 
-    // Set up 2D Code and build the symbol
-    TwoDSymbol symbol = null;
-    if (errMsg == null) {
-      TwoDCode twoDCode = new TwoDCode(r.type);
-      twoDCode.setContent(content);
-      twoDCode.setCharset(charset);
-      if (twoDCode.canEncode()) { // This should be called AFTER setting content and charset
-        twoDCode.setQuietZone(r.quietZone);
-        twoDCode.setQRCodeVersion(QRCodeVersion.valueOf(r.qrVersion));
-        twoDCode.setQRCodeErrCorr(r.qrErrorCorrection);
-        twoDCode.setDataMatrixSize(DataMatrixSize.valueOf(r.dmSize));
-        twoDCode.setDataMatrixShape(r.dmShape);
-        twoDCode.setPDF417Size(new PDF417Size(r.pdf417Cols, r.pdf417Rows));
-        twoDCode.setPDF417ErrCorr(PDF417ErrorCorrection.valueOf(r.pdf417ErrorCorrection));
-        twoDCode.setAztecSize(AztecSize.valueOf(r.aztecSize));
-        twoDCode.setAztecErrCorr(r.aztecErrorCorrection);
-        try {
-          symbol = twoDCode.buildSymbol();
-        } catch (Exception ex) {
-          errMsg = invalidText;
-        }
-      } else {
-        errMsg = notEncodableText;
-      }
-    }
 
-    if (errMsg != null) // HTTP 422
-      return ResponseEntity.unprocessableEntity().contentType(TEXT_PLAIN_UTF8).body(errMsg);
+  //---- Cacheable GET variant of /create1d, e.g. "/barcode/1d/EAN13.svg?content=400638133393"
+  @GetMapping("/barcode/1d/{type}.{format}")
+  public ResponseEntity<?> getBarcode1D(@PathVariable String type, @PathVariable String format,
+      @RequestParam MultiValueMap<String,String> params, HttpServletRequest request,
+      @RequestHeader(value = "Accept-Language", defaultValue = "en") String language,
+      @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+      @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding) {
+    return createQueryResponse(BarcodeRequest1D.class, parseEnum(BarcodeType.class, type),
+        parseEnum(ImageFormat.class, format), params, request, language, ifNoneMatch,
+        acceptEncoding);
+  }
 
-    // Draw the symbol
-    Graphics2D g2d = exporter.getGraphics2D();
-    symbol.draw(g2d, r.marginLeft, r.marginTop, r.width, r.height, r.dpi > 0 ? 25.4 / r.dpi : 0.0);
-    g2d.dispose();
 
-    // Encode the symbol into the output format and return
-    return createFileResponse(exporter, r);
+  //---- Cacheable GET variant of /create2d, e.g. "/barcode/2d/QRCODE.png?content=Hello"
+  @GetMapping("/barcode/2d/{type}.{format}")
+  public ResponseEntity<?> getBarcode2D(@PathVariable String type, @PathVariable String format,
+      @RequestParam MultiValueMap<String,String> params, HttpServletRequest request,
+      @RequestHeader(value = "Accept-Language", defaultValue = "en") String language,
+      @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+      @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding) {
+    return createQueryResponse(BarcodeRequest2D.class, parseEnum(TwoDType.class, type),
+        parseEnum(ImageFormat.class, format), params, request, language, ifNoneMatch,
+        acceptEncoding);
   }
 
 
-  //---- Validates parameters that apply to both 1D and 2D code types.
-  //     Returns 'null' when validation succeeds, otherwise returns an error response.
-  private ResponseEntity<?> setupCommonParams(BarExporter exporter, BarcodeRequest r) {
-    if (r.dpi < 150 || r.dpi > 2400) {
-      if (r.format.isRasterFormat())
-        return ResponseEntity.badRequest().contentType(TEXT_PLAIN_UTF8) // HTTP 400
-          .body("Raster formats require DPI between 150 and 2400");
-      else if (r.dpi != 0)
-        return ResponseEntity.badRequest().contentType(TEXT_PLAIN_UTF8) // HTTP 400
-          .body("DPI must be a value between 150 and 2400 or zero");
+  //---- The output of a GET request depends on its URL only (and Accept-Encoding for compressible
+  //     formats), so it is cacheable by anyone for a long time. Each distinct request has one URL
+  //     (type in upper case, format in lower case, normalized query); any other spelling is
+  //     permanently redirected there, so CDNs and browsers keep a single entry per barcode.
+  private ResponseEntity<?> createQueryResponse(Class<? extends BarcodeRequest> requestType,
+      Enum<?> type, Enum<?> format, MultiValueMap<String,String> params,
+      HttpServletRequest request, String language, String ifNoneMatch, String acceptEncoding) {
+    if (type == null || format == null) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).cacheControl(CacheControl.noStore())
+          .contentType(TEXT_PLAIN_UTF8).body("Unknown barcode type or format"); // HTTP 404
+    }
+    RenderTrace trace = new RenderTrace();
+    trace.mark();
+
+    SortedMap<String,String> normalized = queryMapper.normalize(requestType, params);
+    String canonicalPath = request.getContextPath()
+        + (requestType == BarcodeRequest1D.class ? "/barcode/1d/" : "/barcode/2d/")
+        + type.name() + '.' + format.name().toLowerCase(Locale.ROOT);
+    String canonicalQuery = QueryRequestMapper.toQueryString(normalized);
+    String query = request.getQueryString();
+    if (!canonicalPath.equals(request.getRequestURI())
+        || !canonicalQuery.equals(query != null ? query : "")) {
+      String location = canonicalQuery.isEmpty() ? canonicalPath
+                                                 : canonicalPath + '?' + canonicalQuery;
+      return ResponseEntity.status(HttpStatus.MOVED_PERMANENTLY).cacheControl(publicCacheControl)
+          .header("Location", location).build(); // HTTP 301
     }
 
-    String errMsgPrefix = "Foreground: ";
+    final BarcodeRequest r;
     try {
-      exporter.setForeground(toCompoundColor(r.foreground, r.colorModel));
-      errMsgPrefix = "Background: ";
-      exporter.setBackground(toCompoundColor(r.background, r.colorModel));
-    } catch (IllegalArgumentException e) {
-      return ResponseEntity.badRequest().contentType(TEXT_PLAIN_UTF8) // HTTP 400
-          .body(errMsgPrefix + e.getMessage());
+      r = queryMapper.toRequest(requestType, type.name(), (ImageFormat)format, normalized);
+    } catch (RenderException e) { // HTTP 400
+      return errorResponse(e, CacheControl.noStore());
     }
+    trace.end(RenderTrace.Stage.BIND);
+    return createFileResponse(r, language, ifNoneMatch, acceptEncoding, trace,
+        publicCacheControl);
+  }
 
-    exporter.setTitle(r.formatInlineSVG ? null : r.getTypeName());
-    exporter.setCreator("Barcode-Lib4J Service");
-    exporter.setOpaque(r.opaque);
-    exporter.setTransform(r.transform);
-    exporter.setInlineSVG(r.formatInlineSVG);
-    exporter.setTiffResolution(r.formatPreviewDpiEPS);
 
+  //---- Returns the enum constant whose name matches 'value' regardless of case, or null
+  private static <E extends Enum<E>> E parseEnum(Class<E> enumType, String value) {
+    for (E constant : enumType.getEnumConstants()) {
+      if (constant.name().equalsIgnoreCase(value))
+        return constant;
+    }
     return null;
   }
 
 
-  //----
-  private CompoundColor toCompoundColor(List<Integer> c, ImageColorModel colorModel)
-      throws IllegalArgumentException { // ... throws it on 4 lines!
-    if (colorModel == ImageColorModel.RGB) {
-      if (c.size() != 3)
-        throw new IllegalArgumentException("RGB colors must have exactly 3 values [R,G,B]");
-      return new CompoundColor(c.get(0), c.get(1), c.get(2)); // Out of range > throws IAE
-    } else {
-      if (c.size() != 4)
-        throw new IllegalArgumentException("CMYK colors must have exactly 4 values [C,M,Y,K]");
-      return new CompoundColor(c.get(0), c.get(1), c.get(2), c.get(3)); // Out of range > throws IAE
+  //---- Renders the request and wraps the output file, or the error message, into a response.
+  //     The ETag is derived from the request and the render version (library version, service
+  //     build, render settings, fonts) alone, so a matching If-None-Match needs no rendering,
+  //     and no immutable response outlives an upgrade.
+  //     A non-null 'cacheControl' is sent with the file and with 304; errors are never cached.
+  //     If the client accepts gzip, the compressed variant is sent (with an ETag of its own) if
+  //     the format is compressible and the file large enough. It is cached next to the original.
+  //     Files not in the render cache are looked up in the DiskCache before they are rendered.
+  private ResponseEntity<?> createFileResponse(BarcodeRequest r, String language,
+      String ifNoneMatch, String acceptEncoding, RenderTrace trace, CacheControl cacheControl) {
+    // The DiskCache outlives the process, so its keys carry the render version like the ETags
+    final String key = r.getCacheKey() + '-' + renderService.getRenderVersion();
+    final String eTag = '"' + key + '"';
+    final boolean compressible = compressor.isEnabled(r.format);
+    final boolean gzip = compressible && ResponseCompressor.acceptsGzip(acceptEncoding);
+    final String gzipETag = gzip ? '"' + key + '-' + ResponseCompressor.GZIP + '"' : null;
+    if (ifNoneMatch != null
+        && (eTagMatches(ifNoneMatch, eTag) || gzip && eTagMatches(ifNoneMatch, gzipETag))) {
+      var builder = ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+          .eTag(eTagMatches(ifNoneMatch, eTag) ? eTag : gzipETag);
+      if (cacheControl != null)
+        builder.cacheControl(cacheControl);
+      if (compressible)
+        builder.varyBy("Accept-Encoding");
+      return builder.build(); // HTTP 304
+    }
+
+    final String gzipKey = gzip ? key + ':' + ResponseCompressor.GZIP : null;
+    byte[] compressed = gzip ? renderCache.get(gzipKey) : null;
+    if (compressed != null) {
+      RenderEvent.emit(r, trace, 200, compressed.length, true);
+      return compressedResponse(r, gzipETag, cacheControl, compressed, compressed.length);
+    }
+    ByteBuffer stored = gzip ? diskCache.get(gzipKey) : null;
+    if (stored != null) {
+      RenderEvent.emit(r, trace, 200, stored.remaining(), true);
+      return compressedResponse(r, gzipETag, cacheControl, stored, stored.remaining());
     }
+
+    byte[] data;
+    try {
+      if (!renderService.isCaching() && !diskCache.isEnabled() && !gzip) {
+        // Nothing to keep, so the DrawnBarcodeConverter encodes into a pooled buffer and closes
+        // the bulkhead permit before it writes the response. The destruction callback closes it
+        // if the response is never written. Not coalesced: sharing the output would take a heap
+        // copy of every file, which is what streaming avoids.
+        RenderService.Drawing drawing = renderService.draw(r, language.startsWith("de"), trace);
+        RequestContextHolder.currentRequestAttributes().registerDestructionCallback(
+            RenderBulkhead.class.getName(), drawing.permit()::close,
+            RequestAttributes.SCOPE_REQUEST);
+        return fileResponseBuilder(r, eTag, cacheControl).body(drawing); // HTTP 200
+      }
+      data = renderService.getCached(r, trace);
+      if (data == null) {
+        stored = diskCache.get(key);
+        if (stored != null) {
+          RenderEvent.emit(r, trace, 200, stored.remaining(), true);
+          return fileResponseBuilder(r, eTag, cacheControl)
+              .contentLength(stored.remaining()).body(stored); // HTTP 200
+        }
+        data = renderService.renderAndCache(r, language.startsWith("de"), trace);
+      }
+    } catch (RenderException e) { // HTTP 400, 422 or 503
+      return errorResponse(e, cacheControl != null ? CacheControl.noStore() : null);
+    }
+
+    // The disk cache gets the variant that is sent (put is a no-op for keys it already has)
+    compressed = gzip ? compressor.compress(r.format, data) : null;
+    if (compressed != null) {
+      renderCache.put(gzipKey, compressed);
+      diskCache.put(gzipKey, compressed);
+      return compressedResponse(r, gzipETag, cacheControl, compressed, compressed.length);
+    }
+    diskCache.put(key, data);
+    return fileResponseBuilder(r, eTag, cacheControl)
+        .contentLength(data.length).body(data); // HTTP 200
   }
 
 
-  //----
-  private Font resolveFont(BarcodeRequest1D r) {
-    Font font = B4JServiceApplication.additionalFonts.get(r.fontName);
-    return (font != null ? font : new Font(r.fontName, Font.PLAIN, 0)).deriveFont(r.fontSize);
+  //---- 'body' is a byte array or a ByteBuffer from the DiskCache
+  private ResponseEntity<?> compressedResponse(BarcodeRequest r, String eTag,
+      CacheControl cacheControl, Object body, long length) {
+    return fileResponseBuilder(r, eTag, cacheControl)
+        .header("Content-Encoding", ResponseCompressor.GZIP)
+        .contentLength(length).body(body); // HTTP 200
   }
 
 
   //----
-  private final Pattern AI_ONLY_PATTERN = Pattern.compile("^\\(\\d{2,4}\\)$");
-  private String preprocessGS1Data(String content, char fnc1) {
-    String[] lines = content.split("\n");
-    StringBuilder sb = new StringBuilder(content.length() + lines.length);
-    for (int i=0; i<lines.length; i++) {
-      String s = lines[i].trim();
-      if (!s.isEmpty() && !AI_ONLY_PATTERN.matcher(s).matches()) {
-        sb.append(s);
-        if (i != lines.length - 1 && s.charAt(s.length() - 1) != fnc1)
-          sb.append(fnc1);
-      }
-    }
-    return sb.toString();
+  private ResponseEntity<?> errorResponse(RenderException e, CacheControl cacheControl) {
+    var builder = ResponseEntity.status(e.status).contentType(TEXT_PLAIN_UTF8);
+    if (cacheControl != null)
+      builder.cacheControl(cacheControl);
+    if (e.status == HttpStatus.SERVICE_UNAVAILABLE)
+      builder.header("Retry-After", Integer.toString(renderService.getRetryAfterSeconds()));
+    return builder.body(e.getMessage());
   }
 
 
   //----
-  private ResponseEntity<?> createFileResponse(BarExporter exporter, BarcodeRequest r) {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    try {
-      exporter.write(baos, r.format, r.colorModel, r.dpi, r.dpi);
-    } catch (IOException e) { /* Should never occur - parameters are validated beforehand */ }
-
-    var builder = ResponseEntity.ok().contentType(CONTENT_TYPES.get(r.format));
+  private ResponseEntity.BodyBuilder fileResponseBuilder(BarcodeRequest r, String eTag,
+      CacheControl cacheControl) {
+    var builder = ResponseEntity.ok().contentType(CONTENT_TYPES.get(r.format)).eTag(eTag);
+    if (cacheControl != null)
+      builder.cacheControl(cacheControl);
+    if (compressor.isEnabled(r.format))
+      builder.varyBy("Accept-Encoding");
     if (!r.formatInlineSVG) {
-      String fileName = r.getTypeName().replace(' ', '-') + '.' + r.format.name().toLowerCase();
-      builder.header("Access-Control-Expose-Headers", "Content-Disposition")
-             .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+      builder.header("Access-Control-Expose-Headers", "Content-Disposition, ETag")
+             .header("Content-Disposition", "attachment; filename=\"" + r.getFileName() + "\"");
+    } else {
+      builder.header("Access-Control-Expose-Headers", "ETag");
+    }
+    return builder;
+  }
+
+
+  //---- If-None-Match uses the weak comparison, so a "W/" prefix is ignored. Compares the list
+  //     elements in place, without splitting and trimming them into new strings. "*" does not
+  //     match: whether the requested file exists is only known after rendering it.
+  static boolean eTagMatches(String ifNoneMatch, String eTag) {
+    final int length = ifNoneMatch.length();
+    for (int start=0; start<length; ) {
+      int end = ifNoneMatch.indexOf(',', start);
+      if (end < 0)
+        end = length;
+      int from = start, to = end;
+      while (from < to && ifNoneMatch.charAt(from) <= ' ')
+        from++;
+      while (to > from && ifNoneMatch.charAt(to - 1) <= ' ')
+        to--;
+      if (ifNoneMatch.startsWith("W/", from) && from + 2 <= to)
+        from += 2;
+      final int n = to - from;
+      if (n == eTag.length() && ifNoneMatch.regionMatches(from, eTag, 0, n))
+        return true;
+      start = end + 1;
     }
-    return builder.body(baos.toByteArray()); // HTTP 200
+    return false;
   }
 
 }
@@ -0,0 +1,224 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.vwsoft.barcodelib4jservice.grpc.BarcodeServiceGrpc;
+import de.vwsoft.barcodelib4jservice.grpc.RenderRequest;
+import de.vwsoft.barcodelib4jservice.grpc.RenderResponse;
+
+
+// Implementation of the gRPC BarcodeService (see barcode_service.proto), served by the GrpcServer.
+// Messages are bound and validated exactly like JSON bodies and rendered by the same RenderService
+// as the REST endpoints, including render cache, bulkhead and metrics. Failed requests are answered
+// with the HTTP status and message the REST endpoints would give, so that one failed item does not
+// end a stream.
+//
+// RenderStream is flow-controlled in both directions. At most 'grpc.stream.window' requests of a
+// stream are read ahead and rendered in parallel on the worker pool; a further request is read only
+// when a response has been sent. If the client does not read its responses fast enough, no further
+// requests are read until the transport is ready again.
+//
+// Managed as a singleton by Spring and used concurrently by many threads. Therefore, any instance
+// fields (if present) must be thread-safe.
+@Component
+public class BarcodeGrpcService extends BarcodeServiceGrpc.BarcodeServiceImplBase {
+  private final RenderService renderService;
+  private final QueryRequestMapper requestMapper;
+  private final ExecutorService executor;
+  private final int window;
+
+
+  //----
+  public BarcodeGrpcService(RenderService renderService, QueryRequestMapper requestMapper,
+      @Value("${grpc.threads:0}") int threads, @Value("${grpc.stream.window:16}") int window) {
+    this.renderService = renderService;
+    this.requestMapper = requestMapper;
+    this.window = Math.max(1, window);
+
+    final AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(
+        threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), runnable -> {
+          Thread t = new Thread(runnable, "grpc-render-" + threadNumber.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+  }
+
+
+  //----
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+
+  //---- The worker pool, which the GrpcServer also runs its call handlers on
+  Executor getExecutor() {
+    return executor;
+  }
+
+
+  //----
+  @Override
+  public void render(RenderRequest request, StreamObserver<RenderResponse> responseObserver) {
+    responseObserver.onNext(renderOne(request));
+    responseObserver.onCompleted();
+  }
+
+
+  //----
+  @Override
+  public StreamObserver<RenderRequest> renderStream(
+      StreamObserver<RenderResponse> responseObserver) {
+    final ServerCallStreamObserver<RenderResponse> responses =
+        (ServerCallStreamObserver<RenderResponse>)responseObserver;
+    final StreamState state = new StreamState(responses);
+    responses.disableAutoRequest();
+    responses.setOnReadyHandler(state::onReady);
+    // With a cancel handler, a response sent after the client cancelled is dropped. Without one,
+    // onNext would throw on the worker if the client cancels right after the check in 'completed'.
+    responses.setOnCancelHandler(state::cancelled);
+    responses.request(window);
+
+    return new StreamObserver<>() {
+      @Override
+      public void onNext(RenderRequest request) {
+        state.started();
+        executor.execute(() -> state.completed(renderOne(request)));
+      }
+
+      @Override
+      public void onError(Throwable t) { // Cancelled by the client - nothing left to answer
+        state.cancelled();
+      }
+
+      @Override
+      public void onCompleted() {
+        state.halfClosed();
+      }
+    };
+  }
+
+
+  //---- Binds, validates and renders one request. Never throws, so that every request of a stream
+  //     is answered; unexpected failures get HTTP status 500 and a generic message.
+  private RenderResponse renderOne(RenderRequest request) {
+    RenderResponse.Builder response = RenderResponse.newBuilder().setId(request.getId());
+    RenderTrace trace = new RenderTrace();
+    trace.mark();
+    try {
+      final BarcodeRequest r = switch (request.getBarcodeCase()) {
+        case BARCODE1D -> requestMapper.bind(BarcodeRequest1D.class,
+            toProperties(request.getBarcode1D()), "Invalid field value");
+        case BARCODE2D -> requestMapper.bind(BarcodeRequest2D.class,
+            toProperties(request.getBarcode2D()), "Invalid field value");
+        default -> throw RenderException.badRequest("Either barcode1d or barcode2d is required");
+      };
+      trace.end(RenderTrace.Stage.BIND);
+      byte[] data = renderService.render(r, request.getLanguage().startsWith("de"), trace);
+      return response.setStatus(200)
+          .setData(UnsafeByteOperations.unsafeWrap(data)) // Cached arrays are never modified
+          .setContentType(BarcodeController.CONTENT_TYPES.get(r.format).toString())
+          .setFileName(r.getFileName())
+          .build();
+    } catch (RenderException e) { // HTTP 400, 422 or 503
+      return response.setStatus(e.status.value()).setError(e.getMessage()).build();
+    } catch (RuntimeException e) { // Unexpected - the stream must go on with other requests
+      return response.setStatus(500).setError("Internal error").build();
+    }
+  }
+
+
+  //---- The fields that are set, by JSON name. Unset fields stay missing and so get the defaults.
+  private static Map<String,Object> toProperties(Message message) {
+    Map<String,Object> properties = new HashMap<>();
+    message.getAllFields().forEach((field, value) -> properties.put(field.getJsonName(), value));
+    return properties;
+  }
+
+
+  //---- Flow control of one RenderStream call. StreamObserver is not thread-safe, so responses are
+  //     sent under the lock of this state from whichever worker finishes a request.
+  private final class StreamState {
+    private final ServerCallStreamObserver<RenderResponse> responses;
+    private int inFlight;      // Requests read, but not yet answered
+    private int deferred;      // Requests not yet read again, because the transport was not ready
+    private boolean halfClosed;
+    private boolean done;
+
+
+    //----
+    StreamState(ServerCallStreamObserver<RenderResponse> responses) {
+      this.responses = responses;
+    }
+
+
+    //----
+    synchronized void started() {
+      inFlight++;
+    }
+
+
+    //---- Sends the response and reads the next request, if the client keeps up
+    synchronized void completed(RenderResponse response) {
+      inFlight--;
+      if (done)
+        return;
+      if (responses.isCancelled()) {
+        done = true;
+        return;
+      }
+      responses.onNext(response);
+      if (responses.isReady())
+        responses.request(1);
+      else
+        deferred++;
+      completeIfDone();
+    }
+
+
+    //----
+    synchronized void onReady() {
+      if (deferred > 0 && !done) {
+        responses.request(deferred);
+        deferred = 0;
+      }
+    }
+
+
+    //----
+    synchronized void halfClosed() {
+      halfClosed = true;
+      completeIfDone();
+    }
+
+
+    //----
+    synchronized void cancelled() {
+      done = true;
+    }
+
+
+    //----
+    private void completeIfDone() {
+      if (halfClosed && inFlight == 0 && !done) {
+        done = true;
+        responses.onCompleted();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,63 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.Locale;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+
+// Response of the /layout1d and /layout2d endpoints: the geometry of the symbol a request
+// produces, or the error that rendering it would fail with. 'columns' and 'rows' are counted in
+// modules without quiet zone; a 1D barcode is a single row of narrow modules (bars only, without
+// text and quiet zones). The minimum size in millimeters assumes one dot per module at 'dpi' -
+// the request's DPI, or DEFAULT_DPI for vector formats - and for stacked codes like PDF417 a row
+// height of three modules.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BarcodeLayout(String type, String symbolSize, Integer columns, Integer rows,
+    Integer quietZone, Integer dpi, Double minWidth, Double minHeight, String error) {
+
+  static final int DEFAULT_DPI = 300;
+  private static final int STACKED_ROW_HEIGHT = 3;
+
+
+  //----
+  static BarcodeLayout of1D(BarcodeRequest1D r, ModuleMatrix matrix, int dpi) {
+    return new BarcodeLayout(r.getTypeName(), matrix.columns + " modules", matrix.columns, 1,
+        null, dpi, toMM(matrix.columns, dpi), null, null);
+  }
+
+
+  //----
+  static BarcodeLayout of2D(BarcodeRequest2D r, ModuleMatrix matrix, int dpi) {
+    final boolean stacked = matrix.rowHeight > 1.0;
+    final int quietZone = r.quietZone;
+    return new BarcodeLayout(r.getTypeName(), symbolSize(r, matrix), matrix.columns, matrix.rows,
+        quietZone, dpi, toMM(matrix.columns + 2 * quietZone, dpi),
+        toMM((stacked ? STACKED_ROW_HEIGHT : 1) * matrix.rows + 2 * quietZone, dpi), null);
+  }
+
+
+  //----
+  static BarcodeLayout error(String type, String message) {
+    return new BarcodeLayout(type, null, null, null, null, null, null, null, message);
+  }
+
+
+  //---- The size in the terms of the symbology: QR Code version, PDF417 data columns and rows,
+  //     otherwise columns x rows
+  private static String symbolSize(BarcodeRequest2D r, ModuleMatrix matrix) {
+    final String name = r.type.name().toUpperCase(Locale.ROOT);
+    final int n = matrix.columns;
+    if (name.contains("QR") && !name.contains("MICRO") && matrix.rows == n && (n - 17) % 4 == 0)
+      return "Version " + (n - 17) / 4;
+    if (name.contains("PDF417") && (n - 69) % 17 == 0) // Start, stop and row indicators: 69
+      return (n - 69) / 17 + " columns x " + matrix.rows + " rows";
+    return n + " x " + matrix.rows;
+  }
+
+
+  //---- Rounded to micrometers
+  private static double toMM(int modules, int dpi) {
+    return Math.ceil(modules * 25400.0 / dpi) / 1000.0;
+  }
+
+}
@@ -0,0 +1,543 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.awt.Graphics2D;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.vwsoft.barcodelib4j.image.BarExporter;
+import de.vwsoft.barcodelib4j.image.CompoundColor;
+import de.vwsoft.barcodelib4j.image.ImageColorModel;
+import de.vwsoft.barcodelib4j.oned.Barcode;
+import de.vwsoft.barcodelib4j.oned.BarcodeException;
+import de.vwsoft.barcodelib4j.oned.BarcodeType;
+import de.vwsoft.barcodelib4j.oned.GS1Validator;
+import de.vwsoft.barcodelib4j.oned.ImplCode128;
+import de.vwsoft.barcodelib4j.twod.AztecSize;
+import de.vwsoft.barcodelib4j.twod.DataMatrixSize;
+import de.vwsoft.barcodelib4j.twod.PDF417ErrorCorrection;
+import de.vwsoft.barcodelib4j.twod.PDF417Size;
+import de.vwsoft.barcodelib4j.twod.QRCodeVersion;
+import de.vwsoft.barcodelib4j.twod.TwoDCode;
+import de.vwsoft.barcodelib4j.twod.TwoDSymbol;
+
+
+// Validates barcode requests, draws them and encodes them into the requested output format.
+// Shared by all endpoints that produce barcode images, so that each of them applies exactly the
+// same validation and rendering rules. Managed as a singleton by Spring and used concurrently by
+// many threads. Therefore, any instance fields (if present) must be thread-safe.
+@Component
+public class BarcodeRenderer {
+  private static final CompoundColor
+      BLACK_RGB  = new CompoundColor(0, 0, 0),        BLACK_CMYK = new CompoundColor(0, 0, 0, 100),
+      WHITE_RGB  = new CompoundColor(255, 255, 255),  WHITE_CMYK = new CompoundColor(0, 0, 0, 0);
+
+  private final FontRegistry fontRegistry;
+  private final OutputBufferPool bufferPool;
+  private final boolean directRaster;
+  private final int svgPrecision;
+  private final String renderVersion;
+
+  // Built 2D symbols (or the reason why building failed), keyed by BarcodeRequest2D#getSymbolKey().
+  // A TwoDSymbol is not modified by drawing it, so a cached instance can be drawn concurrently in
+  // any size, resolution, color and format.
+  private final LruCache<String,SymbolResult> symbolCache;
+
+  // Contents rejected by Barcode#newInstance, keyed by BarcodeRequest1D#getSymbolKey(). Valid 1D
+  // barcodes are not cached, since Barcode instances are configured (text, font, ratio, etc.)
+  // through setters for each request and therefore cannot be shared between threads.
+  private final LruCache<String,BarcodeException> invalidContentCache;
+
+
+  //----
+  public BarcodeRenderer(FontRegistry fontRegistry,
+      @Value("${render.buffer-pool.size:0}") int bufferPoolSize,
+      @Value("${render.buffer-pool.max-retained-bytes:1048576}") int maxRetainedBytes,
+      @Value("${cache.symbol.max-entries:10000}") int maxSymbols,
+      @Value("${render.raster.direct:true}") boolean directRaster,
+      @Value("${render.svg.precision:3}") int svgPrecision) {
+    this.fontRegistry = fontRegistry;
+    this.directRaster = directRaster;
+    this.svgPrecision = Math.max(0, Math.min(6, svgPrecision));
+    this.renderVersion = renderVersion(fontRegistry.getFontsDigest(), directRaster,
+        this.svgPrecision);
+    this.bufferPool = new OutputBufferPool(bufferPoolSize > 0 ?
+        bufferPoolSize : 2 * Runtime.getRuntime().availableProcessors(), maxRetainedBytes);
+    this.symbolCache = new LruCache<>(maxSymbols, result -> 1L);
+    this.invalidContentCache = new LruCache<>(maxSymbols, e -> 1L);
+  }
+
+
+  //---- Validates, draws and encodes the request. Returns the bytes of the output file.
+  public byte[] render(BarcodeRequest r, boolean useGerman) throws RenderException {
+    return encode(draw(r, useGerman, new RenderTrace()));
+  }
+
+
+  //---- Validates the request and draws it. Nothing is encoded yet, so the caller can still
+  //     decide where the output goes to. The time spent is recorded in the given trace.
+  public DrawnBarcode draw(BarcodeRequest r, boolean useGerman, RenderTrace trace)
+      throws RenderException {
+    trace.mark();
+    if (r instanceof BarcodeRequest1D r1D)
+      return draw1D(r1D, useGerman, trace);
+    return draw2D((BarcodeRequest2D)r, useGerman, trace);
+  }
+
+
+  //---- Encodes a drawn barcode into a pooled buffer and returns an exact copy of its bytes
+  public byte[] encode(DrawnBarcode drawnBarcode) {
+    OutputBufferPool.Buffer buffer = bufferPool.acquire();
+    try {
+      drawnBarcode.writeTo(buffer);
+      return buffer.toByteArray();
+    } catch (IOException e) { // Should never occur - parameters are validated beforehand
+      throw new IllegalStateException(e);
+    } finally {
+      bufferPool.release(buffer);
+    }
+  }
+
+
+  //---- Encodes a drawn barcode into a pooled buffer and passes the buffer to 'consumer', before
+  //     it returns into the pool. For callers that write the bytes somewhere without a copy.
+  public void encode(DrawnBarcode drawnBarcode, BufferConsumer consumer) throws IOException {
+    OutputBufferPool.Buffer buffer = bufferPool.acquire();
+    try {
+      drawnBarcode.writeTo(buffer);
+      consumer.accept(buffer);
+    } finally {
+      bufferPool.release(buffer);
+    }
+  }
+
+
+  //---- Returns a short hash over everything besides the request that determines the output
+  //     files: the version of Barcode-Lib4J, the build of this service, the render settings and
+  //     the fonts added from 'fonts.directory'. Part of the ETags and of the DiskCache segments, so
+  //     that no output rendered before an upgrade or a settings change is served afterwards.
+  public String getRenderVersion() {
+    return renderVersion;
+  }
+
+
+  //----
+  private static String renderVersion(byte[] fontsDigest, boolean directRaster,
+      int svgPrecision) {
+    final String components = String.join(",", implementationVersion(BarExporter.class),
+        serviceBuild(), Boolean.toString(directRaster),
+        Integer.toString(svgPrecision), HexFormat.of().formatHex(fontsDigest));
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256")
+          .digest(components.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(hash, 0, 6);
+    } catch (NoSuchAlgorithmException e) { // Every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+
+  //---- The version and build time of this service from META-INF/build-info.properties (written
+  //     by every Maven build, see pom.xml), so that a change of the output takes effect without a
+  //     version bump. Without the file (run from an IDE), the service is identified like a library.
+  private static String serviceBuild() {
+    try (InputStream in = BarcodeRenderer.class.getClassLoader()
+        .getResourceAsStream("META-INF/build-info.properties")) {
+      if (in != null) {
+        Properties buildInfo = new Properties();
+        buildInfo.load(in);
+        return buildInfo.getProperty("build.version") + "@" + buildInfo.getProperty("build.time");
+      }
+    } catch (IOException e) { // Not readable - treated as missing
+    }
+    return implementationVersion(BarcodeRenderer.class);
+  }
+
+
+  //---- The version from the manifest of the JAR file the class was loaded from, or the location
+  //     of that JAR file (its name usually contains the version) if the manifest has none
+  private static String implementationVersion(Class<?> c) {
+    String version = c.getPackage().getImplementationVersion();
+    if (version != null)
+      return version;
+    CodeSource source = c.getProtectionDomain().getCodeSource();
+    return source != null && source.getLocation() != null ?
+        source.getLocation().toString() : "unknown";
+  }
+
+
+  //----
+  LruCache<String,?> getSymbolCache() {
+    return symbolCache;
+  }
+
+
+  //----
+  private DrawnBarcode draw1D(BarcodeRequest1D r, boolean useGerman, RenderTrace trace)
+      throws RenderException {
+
+    // Validate and set up common properties (used by both 1D and 2D barcodes)
+    BarExporter exporter = new BarExporter(r.marginLeft + r.width  + r.marginRight,
+                                           r.marginTop  + r.height + r.marginBottom);
+    setupCommonParams(exporter, r);
+    trace.end(RenderTrace.Stage.VALIDATE);
+
+    // Create the barcode instance. Contents that are known to be invalid are rejected right away.
+    final Barcode barcode;
+    try {
+      barcode = newBarcode(r, useGerman);
+    } finally {
+      trace.end(RenderTrace.Stage.BUILD);
+    }
+    configure(barcode, r);
+    trace.end(RenderTrace.Stage.BUILD);
+
+    // Compact SVG: the bars as a single path, if the barcode has no text
+    if (ModuleSvg.supports(r)) {
+      ModuleSvg svg = createSvg(r, barcode);
+      if (svg != null) {
+        trace.end(RenderTrace.Stage.DRAW);
+        return new DrawnBarcode(null, svg, r, trace);
+      }
+    }
+
+    // Draw the barcode
+    Graphics2D g2d = exporter.getGraphics2D();
+    barcode.draw(g2d, r.marginLeft, r.marginTop, r.width, r.height,
+        r.dpi > 0 ? 25.4 / r.dpi : 0.0, 0.0, 0.0);
+    g2d.dispose();
+    trace.end(RenderTrace.Stage.DRAW);
+
+    return new DrawnBarcode(exporter, r, trace);
+  }
+
+
+  //----
+  private DrawnBarcode draw2D(BarcodeRequest2D r, boolean useGerman, RenderTrace trace)
+      throws RenderException {
+
+    // Validate and set up common properties (used by both 1D and 2D barcodes)
+    BarExporter exporter = new BarExporter(r.marginLeft + r.width  + r.marginRight,
+                                           r.marginTop  + r.height + r.marginBottom);
+    setupCommonParams(exporter, r);
+
+    validatePDF417Size(r);
+    trace.end(RenderTrace.Stage.VALIDATE);
+
+    // Build the symbol, unless an equally encoded one is cached
+    SymbolResult result = getSymbol(r);
+    trace.end(RenderTrace.Stage.BUILD);
+    if (result.symbol == null) // HTTP 422
+      throw RenderException.unprocessable(useGerman ? result.errMsgGerman : result.errMsg);
+    final TwoDSymbol symbol = result.symbol;
+
+    // PNG, BMP and compact SVG: write the module matrix directly if possible (no Graphics2D)
+    ModuleImage image = createModuleImage(r, result);
+    if (image != null) {
+      trace.end(RenderTrace.Stage.DRAW);
+      return new DrawnBarcode(null, image, r, trace);
+    }
+
+    // Draw the symbol
+    Graphics2D g2d = exporter.getGraphics2D();
+    symbol.draw(g2d, r.marginLeft, r.marginTop, r.width, r.height, r.dpi > 0 ? 25.4 / r.dpi : 0.0);
+    g2d.dispose();
+    trace.end(RenderTrace.Stage.DRAW);
+
+    return new DrawnBarcode(exporter, r, trace);
+  }
+
+
+  //---- Validates the request like 'draw' and prepares it for being drawn onto a shared canvas
+  //     (label sheets): the 1D barcode is created and configured, the 2D symbol is built or taken
+  //     from the cache. Preparing may run in parallel; drawing onto one Graphics2D may not.
+  public PreparedBarcode prepare(BarcodeRequest r, boolean useGerman) throws RenderException {
+    setupCommonParams(new BarExporter(r.marginLeft + r.width  + r.marginRight,
+                                      r.marginTop  + r.height + r.marginBottom), r);
+    if (r instanceof BarcodeRequest1D r1D) {
+      Barcode barcode = newBarcode(r1D, useGerman);
+      configure(barcode, r1D);
+      return new PreparedBarcode(r, barcode, null);
+    }
+    final BarcodeRequest2D r2D = (BarcodeRequest2D)r;
+    validatePDF417Size(r2D);
+    SymbolResult result = getSymbol(r2D);
+    if (result.symbol == null) // HTTP 422
+      throw RenderException.unprocessable(useGerman ? result.errMsgGerman : result.errMsg);
+    return new PreparedBarcode(r, null, result.symbol);
+  }
+
+
+  //---- A BarExporter of the given size (e.g. a page), set up with the common parameters of the
+  //     request. Throws an exception (HTTP 400) if they are invalid.
+  public BarExporter newExporter(BarcodeRequest r, double width, double height)
+      throws RenderException {
+    BarExporter exporter = new BarExporter(width, height);
+    setupCommonParams(exporter, r);
+    return exporter;
+  }
+
+
+  //---- Validates the request like 'draw' and measures the symbol instead of drawing it
+  public BarcodeLayout layout(BarcodeRequest r, boolean useGerman) throws RenderException {
+    setupCommonParams(new BarExporter(r.marginLeft + r.width  + r.marginRight,
+                                      r.marginTop  + r.height + r.marginBottom), r);
+    final int dpi = r.dpi > 0 ? r.dpi : BarcodeLayout.DEFAULT_DPI;
+
+    if (r instanceof BarcodeRequest1D r1D) {
+      Barcode barcode = newBarcode(r1D, useGerman);
+      barcode.setFont(fontRegistry.getFont(r1D.fontName, r1D.fontSize));
+      barcode.setRatio(r1D.ratio);
+      return BarcodeLayout.of1D(r1D, ModuleMatrix.of(barcode), dpi);
+    }
+    final BarcodeRequest2D r2D = (BarcodeRequest2D)r;
+    validatePDF417Size(r2D);
+    SymbolResult result = getSymbol(r2D);
+    if (result.symbol == null) // HTTP 422
+      throw RenderException.unprocessable(useGerman ? result.errMsgGerman : result.errMsg);
+    return BarcodeLayout.of2D(r2D, result.getMatrix(), dpi);
+  }
+
+
+  //---- Creates the 1D barcode. Throws an exception (HTTP 422) if the content is invalid; such
+  //     contents are remembered and rejected right away next time.
+  private Barcode newBarcode(BarcodeRequest1D r, boolean useGerman) throws RenderException {
+    final String symbolKey = r.getSymbolKey();
+    BarcodeException invalidContent = invalidContentCache.get(symbolKey);
+    if (invalidContent == null) {
+      final String content = r.type == BarcodeType.EAN128 ?
+          GS1Parser.joinLines(r.content, ImplCode128.FNC1) : r.content;
+      try {
+        Barcode barcode =
+            Barcode.newInstance(r.type, content, r.autoComplete, r.appendOptionalChecksum);
+        barcode.setAddOn(r.addon);
+        return barcode;
+      } catch (BarcodeException e) {
+        invalidContentCache.put(symbolKey, e);
+        invalidContent = e;
+      }
+    }
+    throw RenderException.unprocessable(useGerman ? // HTTP 422
+        invalidContent.getLocalizedMessage() : invalidContent.getMessage());
+  }
+
+
+  //----
+  private void configure(Barcode barcode, BarcodeRequest1D r) {
+    barcode.setTextVisible(r.textVisible);
+    barcode.setTextOnTop(r.textOnTop);
+    barcode.setTextOffset(r.textOffset);
+    barcode.setFont(fontRegistry.getFont(r.fontName, r.fontSize));
+    barcode.setFontSizeAdjusted(r.fontSize == 0F);
+    barcode.setRatio(r.ratio);
+    barcode.setOptionalChecksumVisible(r.showOptionalChecksum);
+  }
+
+
+  //---- Returns null if the request is not eligible for being written from the module matrix
+  private ModuleImage createModuleImage(BarcodeRequest2D r, SymbolResult result) {
+    try {
+      if (ModuleSvg.supports(r))
+        return ModuleSvg.create(r, result.getMatrix(), svgPrecision);
+      if (directRaster && r.format.isRasterFormat())
+        return ModuleRaster.create(r, result.getMatrix());
+      return null;
+    } catch (IllegalStateException e) { // Symbol not on a regular grid - draw it as usual
+      return null;
+    }
+  }
+
+
+  //---- Returns null if the bars cannot be measured
+  private ModuleSvg createSvg(BarcodeRequest1D r, Barcode barcode) {
+    try {
+      return ModuleSvg.create(r, ModuleMatrix.barEdges(barcode), svgPrecision);
+    } catch (IllegalStateException e) { // Bars of different heights - draw it as usual
+      return null;
+    }
+  }
+
+
+  //---- Returns the symbol from the cache or builds it
+  private SymbolResult getSymbol(BarcodeRequest2D r) {
+    final String symbolKey = r.getSymbolKey();
+    SymbolResult result = symbolCache.get(symbolKey);
+    if (result == null) {
+      result = buildSymbol(r);
+      symbolCache.put(symbolKey, result);
+    }
+    return result;
+  }
+
+
+  //---- Validates PDF417 dimensions (too complex for annotation validation)
+  private static void validatePDF417Size(BarcodeRequest2D r) throws RenderException {
+    if (r.pdf417Cols != 0 && (r.pdf417Cols < 1 || r.pdf417Cols > 30))
+      throw RenderException.badRequest("PDF417 columns must be 0 (AUTO) or between 1 and 30");
+    if (r.pdf417Rows != 0 && (r.pdf417Rows < 3 || r.pdf417Rows > 90))
+      throw RenderException.badRequest("PDF417 rows must be 0 (AUTO) or between 3 and 90");
+  }
+
+
+  //---- Validates 'content' and 'charset' and builds the symbol. Depends only on the inputs that
+  //     make up BarcodeRequest2D#getSymbolKey(). Errors (HTTP 422) are returned in both languages.
+  private SymbolResult buildSymbol(BarcodeRequest2D r) {
+    String errMsg = null; // Let's see if there is an error to collect within the two if-blocks
+    String errMsgGerman = null;
+    String content = r.content;
+    Charset charset = null;
+    if (r.type.isGS1() || content.isEmpty()) {          // GS1 validation. Also validate empty
+      content = GS1Parser.joinLines(content, (char)29); // content to get localized error message
+      try {                                             // "for free" from 'BarcodeException'
+        content = new GS1Validator(content, (char)29).getContent();
+      } catch (BarcodeException e) {
+        errMsg = e.getMessage();
+        errMsgGerman = e.getLocalizedMessage();
+      }
+    } else if (r.charset != null) { // ECI will be inserted into the symbol
+      try {
+        charset = Charset.forName(r.charset);
+      } catch (Exception e) {
+        return SymbolResult.NOT_ENCODABLE;
+      }
+    }
+    if (errMsg != null)
+      return new SymbolResult(null, 0, errMsg, errMsgGerman);
+
+    // Set up 2D Code and build the symbol
+    TwoDCode twoDCode = new TwoDCode(r.type);
+    twoDCode.setContent(content);
+    twoDCode.setCharset(charset);
+    if (!twoDCode.canEncode()) // This should be called AFTER setting content and charset
+      return SymbolResult.NOT_ENCODABLE;
+    twoDCode.setQuietZone(r.quietZone);
+    twoDCode.setQRCodeVersion(QRCodeVersion.valueOf(r.qrVersion));
+    twoDCode.setQRCodeErrCorr(r.qrErrorCorrection);
+    twoDCode.setDataMatrixSize(DataMatrixSize.valueOf(r.dmSize));
+    twoDCode.setDataMatrixShape(r.dmShape);
+    twoDCode.setPDF417Size(new PDF417Size(r.pdf417Cols, r.pdf417Rows));
+    twoDCode.setPDF417ErrCorr(PDF417ErrorCorrection.valueOf(r.pdf417ErrorCorrection));
+    twoDCode.setAztecSize(AztecSize.valueOf(r.aztecSize));
+    twoDCode.setAztecErrCorr(r.aztecErrorCorrection);
+    try {
+      return new SymbolResult(twoDCode.buildSymbol(), r.quietZone, null, null);
+    } catch (Exception ex) {
+      return SymbolResult.INVALID;
+    }
+  }
+
+
+  //---- Either a built symbol, or the error message in English and German. The module matrix of
+  //     the symbol is determined on first use only; concurrent first uses may both compute it.
+  private static final class SymbolResult {
+    static final SymbolResult INVALID = new SymbolResult(null, 0, "invalid", "ung\u00FCltig");
+    static final SymbolResult NOT_ENCODABLE = new SymbolResult(null, 0,
+        "Content not encodable with charset", "Inhalt nicht mit Zeichensatz kodierbar");
+
+    final TwoDSymbol symbol;
+    final int quietZone;
+    final String errMsg;
+    final String errMsgGerman;
+    private volatile ModuleMatrix matrix;
+
+    SymbolResult(TwoDSymbol symbol, int quietZone, String errMsg, String errMsgGerman) {
+      this.symbol = symbol;
+      this.quietZone = quietZone;
+      this.errMsg = errMsg;
+      this.errMsgGerman = errMsgGerman;
+    }
+
+    ModuleMatrix getMatrix() {
+      ModuleMatrix m = matrix;
+      if (m == null)
+        matrix = m = ModuleMatrix.of(symbol, quietZone);
+      return m;
+    }
+  }
+
+
+  //---- A validated request with its configured 1D barcode or built 2D symbol. A Barcode instance
+  //     is mutable, so a PreparedBarcode must not be drawn by several threads at once.
+  public record PreparedBarcode(BarcodeRequest request, Barcode barcode, TwoDSymbol symbol) {
+
+    //---- Draws the barcode with its margins at (x, y) in millimeters, e.g. the corner of a cell
+    public void draw(Graphics2D g2d, double x, double y) {
+      final BarcodeRequest r = request;
+      final double dotSize = r.dpi > 0 ? 25.4 / r.dpi : 0.0;
+      if (barcode != null) {
+        barcode.draw(g2d, x + r.marginLeft, y + r.marginTop, r.width, r.height, dotSize, 0.0,
+            0.0);
+      } else {
+        symbol.draw(g2d, x + r.marginLeft, y + r.marginTop, r.width, r.height, dotSize);
+      }
+    }
+  }
+
+
+  //---- Receives the encoded bytes of 'encode'; the buffer must not be used after returning
+  @FunctionalInterface
+  public interface BufferConsumer {
+    void accept(OutputBufferPool.Buffer buffer) throws IOException;
+  }
+
+
+  //---- Validates parameters that apply to both 1D and 2D code types.
+  //     Throws an exception (HTTP 400) when validation fails.
+  private void setupCommonParams(BarExporter exporter, BarcodeRequest r) throws RenderException {
+    if (r.dpi < 150 || r.dpi > 2400) {
+      if (r.format.isRasterFormat())
+        throw RenderException.badRequest("Raster formats require DPI between 150 and 2400");
+      else if (r.dpi != 0)
+        throw RenderException.badRequest("DPI must be a value between 150 and 2400 or zero");
+    }
+
+    String errMsgPrefix = "Foreground: ";
+    try {
+      exporter.setForeground(toCompoundColor(r.foreground, r.colorModel));
+      errMsgPrefix = "Background: ";
+      exporter.setBackground(toCompoundColor(r.background, r.colorModel));
+    } catch (IllegalArgumentException e) {
+      throw RenderException.badRequest(errMsgPrefix + e.getMessage());
+    }
+
+    exporter.setTitle(r.formatInlineSVG ? null : r.getTypeName());
+    exporter.setCreator("Barcode-Lib4J Service");
+    exporter.setOpaque(r.opaque);
+    exporter.setTransform(r.transform);
+    exporter.setInlineSVG(r.formatInlineSVG);
+    exporter.setTiffResolution(r.formatPreviewDpiEPS);
+  }
+
+
+  //---- Package-private for the benchmarks. Black and white, which nearly all requests use, are
+  //     shared instances (CompoundColor is immutable), so that no color is allocated for them.
+  static CompoundColor toCompoundColor(List<Integer> c, ImageColorModel colorModel)
+      throws IllegalArgumentException { // ... throws it on 4 lines!
+    if (colorModel == ImageColorModel.RGB) {
+      if (c.size() != 3)
+        throw new IllegalArgumentException("RGB colors must have exactly 3 values [R,G,B]");
+      final int red = c.get(0), green = c.get(1), blue = c.get(2);
+      if (red == green && green == blue && (red == 0 || red == 255))
+        return red == 0 ? BLACK_RGB : WHITE_RGB;
+      return new CompoundColor(red, green, blue); // Out of range > throws IAE
+    } else {
+      if (c.size() != 4)
+        throw new IllegalArgumentException("CMYK colors must have exactly 4 values [C,M,Y,K]");
+      final int cyan = c.get(0), magenta = c.get(1), yellow = c.get(2), key = c.get(3);
+      if (cyan == 0 && magenta == 0 && yellow == 0 && (key == 0 || key == 100))
+        return key == 0 ? WHITE_CMYK : BLACK_CMYK;
+      return new CompoundColor(cyan, magenta, yellow, key); // Out of range > throws IAE
+    }
+  }
+
+}
@@ -1,6 +1,12 @@
 package de.vwsoft.barcodelib4jservice;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
@@ -11,11 +17,28 @@ import de.vwsoft.barcodelib4j.image.ImageFormat;
 import de.vwsoft.barcodelib4j.image.ImageTransform;
 
 
+// Fields that have a default are primitive: the defaults are applied in the constructor, so
+// nothing is boxed once the request is bound. Only the required fields stay nullable for @NotNull.
 public abstract class BarcodeRequest {
   private static final List<Integer>
       BLACK_RGB = List.of(0, 0, 0),        BLACK_CMYK = List.of(0, 0, 0, 100),
       WHITE_RGB = List.of(255, 255, 255),  WHITE_CMYK = List.of(0, 0, 0, 0);
 
+  private static final Map<ImageFormat,String> EXTENSIONS = new EnumMap<>(ImageFormat.class);
+  static {
+    for (ImageFormat format : ImageFormat.values())
+      EXTENSIONS.put(format, '.' + format.name().toLowerCase());
+  }
+
+  // MessageDigest instances are not thread-safe, but reusable after each digest
+  private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) { // Every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  });
+
   @NotNull(message = "Content is required")
   public final String content;
 
@@ -28,24 +51,26 @@ public abstract class BarcodeRequest {
   public final Double height;
 
   @Min(value = 0, message = "Margin left must be 0 or greater")
-  public final Double marginLeft;
+  public final double marginLeft;
 
   @Min(value = 0, message = "Margin right must be 0 or greater")
-  public final Double marginRight;
+  public final double marginRight;
 
   @Min(value = 0, message = "Margin top must be 0 or greater")
-  public final Double marginTop;
+  public final double marginTop;
 
   @Min(value = 0, message = "Margin bottom must be 0 or greater")
-  public final Double marginBottom;
+  public final double marginBottom;
 
   @NotNull(message = "Format is required")
   public final ImageFormat format;
 
-  public final Boolean formatInlineSVG;
+  public final boolean formatInlineSVG;
+
+  public final boolean formatCompactSVG;
 
   @Min(value = 0, message = "EPS Preview DPI must be 0 (no preview) or positive")
-  public final Integer formatPreviewDpiEPS;
+  public final int formatPreviewDpiEPS;
 
   public final ImageColorModel colorModel;
 
@@ -53,11 +78,13 @@ public abstract class BarcodeRequest {
 
   public final List<Integer> background;
 
-  public final Boolean opaque;
+  public final boolean opaque;
 
   public final ImageTransform transform;
 
-  public final Integer dpi;
+  public final int dpi;
+
+  private String cacheKey; // Computed on first use. Racy, but all threads compute the same value
 
 
   //----
@@ -71,6 +98,7 @@ public abstract class BarcodeRequest {
       Double marginBottom,
       ImageFormat format,
       Boolean formatInlineSVG,
+      Boolean formatCompactSVG,
       Integer formatPreviewDpiEPS,
       ImageColorModel colorModel,
       List<Integer> foreground,
@@ -89,6 +117,8 @@ public abstract class BarcodeRequest {
     this.format = format;
     this.formatInlineSVG = formatInlineSVG != null && format == ImageFormat.SVG ?
         formatInlineSVG : false;
+    this.formatCompactSVG = formatCompactSVG != null && format == ImageFormat.SVG ?
+        formatCompactSVG : false;
     this.formatPreviewDpiEPS = formatPreviewDpiEPS != null && format == ImageFormat.EPS ?
         formatPreviewDpiEPS : 0;
     this.colorModel = colorModel != null ? colorModel : ImageColorModel.RGB;
@@ -108,4 +138,51 @@ public abstract class BarcodeRequest {
   //----
   abstract String getTypeName();
 
+
+  //---- Returns the BarcodeType or TwoDType
+  abstract Enum<?> getType();
+
+
+  //---- Returns the file name under which the rendered output is offered for download
+  String getFileName() {
+    return getTypeName().replace(' ', '-').concat(EXTENSIONS.get(format));
+  }
+
+
+  //---- Returns a SHA-256 hash (hex) over all fields that influence the output file, taken after
+  //     the defaults have been applied. Requests with equal keys produce identical output files.
+  String getCacheKey() {
+    String key = cacheKey;
+    if (key == null) {
+      StringBuilder sb = new StringBuilder(256 + content.length());
+      appendKey(sb);
+      key = HexFormat.of().formatHex(
+          SHA_256.get().digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+      cacheKey = key;
+    }
+    return key;
+  }
+
+
+  //---- Appends the normalized common fields to the canonical key. Subclasses append their own.
+  void appendKey(StringBuilder sb) {
+    appendKey(sb, content);
+    sb.append(width).append(',').append(height).append(',')
+      .append(marginLeft).append(',').append(marginRight).append(',')
+      .append(marginTop).append(',').append(marginBottom).append(',')
+      .append(format).append(',').append(formatInlineSVG).append(',')
+      .append(formatCompactSVG).append(',').append(formatPreviewDpiEPS).append(',')
+      .append(colorModel).append(',')
+      .append(foreground).append(',').append(background).append(',')
+      .append(opaque).append(',').append(transform).append(',').append(dpi).append(',');
+  }
+
+
+  //---- Strings are length-prefixed, so that no two different requests produce the same key
+  static void appendKey(StringBuilder sb, String s) {
+    if (s != null)
+      sb.append(s.length()).append(':').append(s);
+    sb.append(',');
+  }
+
 }
@@ -20,30 +20,30 @@ public class BarcodeRequest1D extends BarcodeRequest {
   @NotNull(message = "Type is required")
   public final BarcodeType type;
 
-  public final Boolean autoComplete;
+  public final boolean autoComplete;
 
-  public final Boolean appendOptionalChecksum;
+  public final boolean appendOptionalChecksum;
 
-  public final Boolean showOptionalChecksum;
+  public final boolean showOptionalChecksum;
 
   public final String addon;
 
-  public final Boolean textVisible;
+  public final boolean textVisible;
 
-  public final Boolean textOnTop;
+  public final boolean textOnTop;
 
   @Min(value = -100, message = "Text offset must be between -100 and 100")
   @Max(value =  100, message = "Text offset must be between -100 and 100")
-  public final Float textOffset;
+  public final float textOffset;
 
   public final String fontName;
 
   @Min(value = 0, message = "Font size must be 0 (auto) or greater")
-  public final Float fontSize;
+  public final float fontSize;
 
   @Min(value = 2, message = "Ratio must be between 2.0 and 3.0")
   @Max(value = 3, message = "Ratio must be between 2.0 and 3.0")
-  public final Float ratio;
+  public final float ratio;
 
 
   //----
@@ -59,6 +59,7 @@ public class BarcodeRequest1D extends BarcodeRequest {
       @JsonProperty("marginBottom") Double marginBottom,
       @JsonProperty("format") ImageFormat format,
       @JsonProperty("formatInlineSVG") Boolean formatInlineSVG,
+      @JsonProperty("formatCompactSVG") Boolean formatCompactSVG,
       @JsonProperty("formatPreviewDpiEPS") Integer formatPreviewDpiEPS,
       @JsonProperty("colorModel") ImageColorModel colorModel,
       @JsonProperty("foreground") List<Integer> foreground,
@@ -79,8 +80,8 @@ public class BarcodeRequest1D extends BarcodeRequest {
       @JsonProperty("fontSize") Float fontSize,
       @JsonProperty("ratio") Float ratio) {
     super(content, width, height, marginLeft, marginRight, marginTop, marginBottom, format,
-        formatInlineSVG, formatPreviewDpiEPS, colorModel, foreground, background, opaque, transform,
-        dpi);
+        formatInlineSVG, formatCompactSVG, formatPreviewDpiEPS, colorModel, foreground, background,
+        opaque, transform, dpi);
 
     this.type = type;
     this.autoComplete = autoComplete != null ? autoComplete : false;
@@ -101,4 +102,35 @@ public class BarcodeRequest1D extends BarcodeRequest {
     return this.type.getTypeNameShort();
   }
 
+
+  //---- Returns a key over the inputs that decide whether the content can be encoded
+  String getSymbolKey() {
+    StringBuilder sb = new StringBuilder(32 + content.length());
+    sb.append(type).append(',').append(autoComplete).append(',')
+      .append(appendOptionalChecksum).append(',');
+    appendKey(sb, addon);
+    appendKey(sb, content);
+    return sb.toString();
+  }
+
+
+  //----
+  Enum<?> getType() {
+    return this.type;
+  }
+
+
+  //----
+  @Override
+  void appendKey(StringBuilder sb) {
+    sb.append("1D,").append(type).append(',');
+    super.appendKey(sb);
+    sb.append(autoComplete).append(',').append(appendOptionalChecksum).append(',')
+      .append(showOptionalChecksum).append(',').append(textVisible).append(',')
+      .append(textOnTop).append(',').append(textOffset).append(',')
+      .append(fontSize).append(',').append(ratio).append(',');
+    appendKey(sb, addon);
+    appendKey(sb, fontName);
+  }
+
 }
@@ -24,34 +24,34 @@ public class BarcodeRequest2D extends BarcodeRequest {
   public final String charset;
 
   @Min(value = 0, message = "Quiet zone must be 0 or greater")
-  public final Integer quietZone;
+  public final int quietZone;
 
   @Min(value = 0,  message = "QR Code version must be between 0 (AUTO) and 40")
   @Max(value = 40, message = "QR Code version must be between 0 (AUTO) and 40")
-  public final Integer qrVersion;
+  public final int qrVersion;
 
   public final QRCodeErrorCorrection qrErrorCorrection;
 
   @Min(value = 0,  message = "DataMatrix size must be between 0 (AUTO) and 30")
   @Max(value = 30, message = "DataMatrix size must be between 0 (AUTO) and 30")
-  public final Integer dmSize;
+  public final int dmSize;
 
   public final DataMatrixShape dmShape;
 
-  public final Integer pdf417Cols; // Validated in controller
-  public final Integer pdf417Rows; // Validated in controller
+  public final int pdf417Cols; // Validated in controller
+  public final int pdf417Rows; // Validated in controller
 
   @Min(value = 0, message = "PDF417 error correction must be between 0 and 8")
   @Max(value = 8, message = "PDF417 error correction must be between 0 and 8")
-  public final Integer pdf417ErrorCorrection;
+  public final int pdf417ErrorCorrection;
 
   @Min(value = -4, message = "Aztec size must be between -4 and 32, or 0 (AUTO)")
   @Max(value = 32, message = "Aztec size must be between -4 and 32, or 0 (AUTO)")
-  public final Integer aztecSize;
+  public final int aztecSize;
 
   @Min(value = 5,  message = "Aztec error correction must be between 5 and 95")
   @Max(value = 95, message = "Aztec error correction must be between 5 and 95")
-  public final Integer aztecErrorCorrection;
+  public final int aztecErrorCorrection;
 
 
   //----
@@ -67,6 +67,7 @@ public class BarcodeRequest2D extends BarcodeRequest {
       @JsonProperty("marginBottom") Double marginBottom,
       @JsonProperty("format") ImageFormat format,
       @JsonProperty("formatInlineSVG") Boolean formatInlineSVG,
+      @JsonProperty("formatCompactSVG") Boolean formatCompactSVG,
       @JsonProperty("formatPreviewDpiEPS") Integer formatPreviewDpiEPS,
       @JsonProperty("colorModel") ImageColorModel colorModel,
       @JsonProperty("foreground") List<Integer> foreground,
@@ -88,8 +89,8 @@ public class BarcodeRequest2D extends BarcodeRequest {
       @JsonProperty("aztecSize") Integer aztecSize,
       @JsonProperty("aztecErrorCorrection") Integer aztecErrorCorrection) {
     super(content, width, height, marginLeft, marginRight, marginTop, marginBottom, format,
-        formatInlineSVG, formatPreviewDpiEPS, colorModel, foreground, background, opaque, transform,
-        dpi);
+        formatInlineSVG, formatCompactSVG, formatPreviewDpiEPS, colorModel, foreground, background,
+        opaque, transform, dpi);
 
     this.type = type;
     this.charset = charset;
@@ -112,4 +113,40 @@ public class BarcodeRequest2D extends BarcodeRequest {
     return this.type.getTypeName();
   }
 
+
+  //---- Returns a key over the inputs that affect the encoding of the symbol. Parameters that only
+  //     affect how the symbol is drawn (size, resolution, colors, format) are not part of it.
+  String getSymbolKey() {
+    StringBuilder sb = new StringBuilder(64 + content.length());
+    sb.append(type).append(',').append(quietZone).append(',')
+      .append(qrVersion).append(',').append(qrErrorCorrection).append(',')
+      .append(dmSize).append(',').append(dmShape).append(',')
+      .append(pdf417Cols).append(',').append(pdf417Rows).append(',')
+      .append(pdf417ErrorCorrection).append(',')
+      .append(aztecSize).append(',').append(aztecErrorCorrection).append(',');
+    appendKey(sb, charset);
+    appendKey(sb, content);
+    return sb.toString();
+  }
+
+
+  //----
+  Enum<?> getType() {
+    return this.type;
+  }
+
+
+  //----
+  @Override
+  void appendKey(StringBuilder sb) {
+    sb.append("2D,").append(type).append(',');
+    super.appendKey(sb);
+    sb.append(quietZone).append(',').append(qrVersion).append(',')
+      .append(qrErrorCorrection).append(',').append(dmSize).append(',')
+      .append(dmShape).append(',').append(pdf417Cols).append(',')
+      .append(pdf417Rows).append(',').append(pdf417ErrorCorrection).append(',')
+      .append(aztecSize).append(',').append(aztecErrorCorrection).append(',');
+    appendKey(sb, charset);
+  }
+
 }
@@ -0,0 +1,239 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+
+// Batch variants of the /create1d and /create2d endpoints. The request body is either a JSON array
+// or an NDJSON stream of barcode requests. Items are parsed one by one while the response is being
+// written, rendered in parallel on a bounded worker pool and written into a ZIP file in input
+// order. The workers render with background permits of the render bulkhead (see RenderService), so
+// batch items count against the same core-sized limit as all other renders, but yield to
+// interactive requests. At most 'batch.window' items of a batch are in flight at any time, so
+// memory usage does not depend on the size of the batch. Items that cannot be bound to a request,
+// fail validation or fail rendering do not abort the batch; they are listed in the "manifest.json"
+// entry that concludes the ZIP file (the first 1000 of them, all further ones are only counted,
+// see FailureList). Only malformed JSON ends the batch early, since no further items are readable.
+//
+// This controller instance is managed as a singleton by Spring. Only one instance exists for the
+// entire application lifecycle and it is reused across all HTTP requests. Therefore, any instance
+// fields (if present) would be shared across threads and must be thread-safe.
+@RestController
+public class BatchController {
+  private static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+
+  private final RenderService renderService;
+  private final Validator validator;
+  private final ObjectMapper objectMapper;
+  private final ExecutorService executor;
+  private final int window;
+
+
+  //----
+  public BatchController(RenderService renderService, Validator validator,
+      ObjectMapper objectMapper, @Value("${batch.threads:0}") int threads,
+      @Value("${batch.window:64}") int window) {
+    this.renderService = renderService;
+    this.validator = validator;
+    this.objectMapper = objectMapper;
+    this.window = Math.max(1, window);
+
+    final AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(
+        threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), runnable -> {
+          Thread t = new Thread(runnable, "batch-render-" + threadNumber.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+  }
+
+
+  //----
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+
+  //----
+  @PostMapping(value = "/create1d/batch",
+      consumes = { MediaType.APPLICATION_JSON_VALUE, MEDIA_TYPE_NDJSON })
+  public ResponseEntity<StreamingResponseBody> createBatch1D(HttpServletRequest request,
+      @RequestHeader(value = "Accept-Language", defaultValue = "en") String language) {
+    return createZipResponse(request, BarcodeRequest1D.class, language.startsWith("de"));
+  }
+
+
+  //----
+  @PostMapping(value = "/create2d/batch",
+      consumes = { MediaType.APPLICATION_JSON_VALUE, MEDIA_TYPE_NDJSON })
+  public ResponseEntity<StreamingResponseBody> createBatch2D(HttpServletRequest request,
+      @RequestHeader(value = "Accept-Language", defaultValue = "en") String language) {
+    return createZipResponse(request, BarcodeRequest2D.class, language.startsWith("de"));
+  }
+
+
+  //----
+  private ResponseEntity<StreamingResponseBody> createZipResponse(HttpServletRequest request,
+      Class<? extends BarcodeRequest> type, boolean useGerman) {
+    StreamingResponseBody body = out -> {
+      try (InputStream in = request.getInputStream()) {
+        writeZip(objectMapper.readerFor(type).readValues(in), useGerman, out);
+      }
+    };
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType("application/zip"))
+        .header("Access-Control-Expose-Headers", "Content-Disposition")
+        .header("Content-Disposition", "attachment; filename=\"barcodes.zip\"")
+        .body(body); // HTTP 200
+  }
+
+
+  //---- Reads the items, keeps up to 'window' of them rendering in parallel and writes the
+  //     results in input order as soon as the oldest pending item is finished
+  private void writeZip(MappingIterator<BarcodeRequest> items, boolean useGerman,
+      OutputStream out) throws IOException {
+    ZipOutputStream zip = new ZipOutputStream(out);
+    Deque<Future<Item>> pending = new ArrayDeque<>();
+    Manifest manifest = new Manifest();
+    try {
+      while (true) {
+        final BarcodeRequest r;
+        try {
+          if (!items.hasNextValue())
+            break;
+          r = items.nextValue();
+        } catch (JsonParseException e) { // Malformed JSON - no further items readable
+          manifest.parseError = "Item " + (manifest.items + 1) + ": " + e.getMessage();
+          break;
+        } catch (JsonMappingException e) { // Well-formed, but not bindable - the iterator skips it
+          final int index = ++manifest.items;
+          pending.add(CompletableFuture.completedFuture(new Item(index, null, null,
+              HttpStatus.BAD_REQUEST.value(), e.getOriginalMessage())));
+          if (pending.size() >= window)
+            writeItem(zip, pending.poll(), manifest);
+          continue;
+        } catch (IOException | RuntimeException e) { // Request body not readable
+          manifest.parseError = "Item " + (manifest.items + 1) + ": " + e.getMessage();
+          break;
+        }
+        final int index = ++manifest.items;
+        pending.add(executor.submit(() -> renderItem(index, r, useGerman)));
+        if (pending.size() >= window)
+          writeItem(zip, pending.poll(), manifest);
+      }
+      while (!pending.isEmpty())
+        writeItem(zip, pending.poll(), manifest);
+
+      zip.putNextEntry(new ZipEntry("manifest.json"));
+      zip.write(objectMapper.writeValueAsBytes(manifest));
+      zip.closeEntry();
+      zip.finish();
+    } finally {
+      pending.forEach(future -> future.cancel(true)); // Only non-empty if the client went away
+    }
+  }
+
+
+  //----
+  private void writeItem(ZipOutputStream zip, Future<Item> future, Manifest manifest)
+      throws IOException {
+    Item item;
+    try {
+      item = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Batch interrupted", e);
+    } catch (ExecutionException e) { // Not expected - all errors are caught in 'renderItem'
+      throw new IOException("Batch item failed", e.getCause());
+    }
+
+    if (item.data != null) {
+      zip.putNextEntry(new ZipEntry(item.fileName));
+      zip.write(item.data);
+      zip.closeEntry();
+      manifest.succeeded++;
+    } else {
+      manifest.failures.add(item.index, item.status, item.message);
+    }
+  }
+
+
+  //----
+  private Item renderItem(int index, BarcodeRequest r, boolean useGerman)
+      throws InterruptedException {
+    if (r == null)
+      return new Item(index, null, null, HttpStatus.BAD_REQUEST.value(), "Item is empty");
+    try {
+      var violations = validator.validate(r);
+      if (!violations.isEmpty()) {
+        String message = violations.stream().map(ConstraintViolation::getMessage)
+            .sorted().collect(Collectors.joining("; "));
+        return new Item(index, null, null, HttpStatus.BAD_REQUEST.value(), message);
+      }
+      String fileName = String.format("%05d-%s", index, r.getFileName());
+      RenderTrace trace = new RenderTrace();
+      trace.mark();
+      return new Item(index, fileName, renderService.renderBackground(r, useGerman, trace), 200,
+          null);
+    } catch (RenderException e) { // HTTP 400 or 422
+      return new Item(index, null, null, e.status.value(), e.getMessage());
+    } catch (RuntimeException e) { // Unexpected - the batch must go on with other items
+      return new Item(index, null, null, HttpStatus.INTERNAL_SERVER_ERROR.value(),
+          "Internal error");
+    }
+  }
+
+
+  //----
+  private record Item(int index, String fileName, byte[] data, int status, String message) {}
+
+
+  //---- Serialized as the final ZIP entry. Successful items are only counted, failed ones only
+  //     listed up to a limit, so the manifest stays small.
+  private static class Manifest {
+    public int items;
+    public int succeeded;
+    public String parseError;
+    final FailureList failures = new FailureList();
+
+    public int getFailedCount() {
+      return failures.getCount();
+    }
+
+    public List<FailureList.Failure> getFailed() {
+      return failures.getListed();
+    }
+  }
+
+}
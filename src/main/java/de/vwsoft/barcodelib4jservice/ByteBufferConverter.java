@@ -0,0 +1,71 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+
+// Writes ByteBuffer response bodies, i.e. output files served from the memory-mapped DiskCache.
+// The bytes are passed from the mapping to the servlet output stream through a small per-thread
+// chunk, so no heap array of the file's size is created. The buffer itself is left unchanged.
+public class ByteBufferConverter extends AbstractHttpMessageConverter<ByteBuffer> {
+  private static final ThreadLocal<byte[]> CHUNK = ThreadLocal.withInitial(() -> new byte[16384]);
+
+
+  //----
+  public ByteBufferConverter() {
+    super(MediaType.ALL);
+  }
+
+
+  //----
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return ByteBuffer.class.isAssignableFrom(clazz);
+  }
+
+
+  //----
+  @Override
+  protected boolean canRead(MediaType mediaType) {
+    return false;
+  }
+
+
+  //----
+  @Override
+  protected ByteBuffer readInternal(Class<? extends ByteBuffer> clazz,
+      HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("ByteBuffer is write-only", inputMessage);
+  }
+
+
+  //----
+  @Override
+  protected Long getContentLength(ByteBuffer buffer, MediaType contentType) {
+    return (long)buffer.remaining();
+  }
+
+
+  //----
+  @Override
+  protected void writeInternal(ByteBuffer buffer, HttpOutputMessage outputMessage)
+      throws IOException {
+    final OutputStream out = outputMessage.getBody();
+    final byte[] chunk = CHUNK.get();
+    final int end = buffer.limit();
+    for (int position=buffer.position(); position<end; ) {
+      int length = Math.min(chunk.length, end - position);
+      buffer.get(position, chunk, 0, length);
+      out.write(chunk, 0, length);
+      position += length;
+    }
+  }
+
+}
@@ -0,0 +1,546 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+// Second cache tier for output files, behind the RenderCache: far larger than the heap allows and
+// kept across restarts. Files are appended to memory-mapped segment files of 'segment-bytes' in
+// 'cache.disk.directory' (empty disables the cache). A hit is returned as a read-only slice of the
+// mapping, so it is sent from the page cache without copying the file onto the heap; the heap
+// usage does not grow with the size of the cache.
+//
+// A segment starts with a header: segment magic (int) and the render version (ASCII, see
+// BarcodeRenderer#getRenderVersion()), which covers the Barcode-Lib4J version, the font files and
+// the render settings. Segments written with another render version could only hold stale files,
+// so they are deleted at startup.
+//
+// Record layout within a segment: magic (int), data length (int), CRC32C of key and data (int), key
+// length (short), key (ASCII), data. The magic is written last, so a record torn by a crash is not
+// valid. At startup the segments are scanned in order and the index is rebuilt from all valid
+// records; scanning a segment stops at its first invalid record, where appending continues.
+//
+// The index is an open-addressing hash table with linear probing in a direct buffer, 16 bytes per
+// slot: key hash (long, 0 = empty), segment id (int), record offset (int, sign bit = accessed since
+// the record was written). Keys are compared with the record itself, so hash collisions are safe.
+//
+// Once the segments exceed 'max-bytes', the oldest segment is evicted as a whole. Its records that
+// were accessed since they were written are first copied to the newest segment (compaction, up to
+// half a segment), all others are dropped from the index. Files larger than half a segment are not
+// stored. The directory is locked, so it cannot be shared by two running instances.
+//
+// Segment files are filled with zeros when they are created, instead of being left sparse. A write
+// to a sparse mapping that finds the disk full cannot fail with an IOException; the JVM gets a
+// SIGBUS and throws an InternalError from wherever the write happened. Preallocating lets a full
+// disk fail the creation of the segment instead, which only leaves the file uncached. Writing a
+// whole segment takes a while, so a new segment is created (and the full one forced to disk)
+// outside the monitor by the put that needs it, and only then added under the monitor; gets and
+// puts that fit into the newest segment go on meanwhile. Files put by other threads while a new
+// segment is being created, that do not fit into the full one, are not cached.
+//
+// Managed as a singleton by Spring and used concurrently by many threads. All operations on the
+// index and the segments are guarded by the cache's monitor; data of returned slices is never
+// modified, and a mapping stays valid as long as a slice of it is referenced, even after eviction.
+@Component
+public class DiskCache {
+  private static final int MAGIC = 0x42344A43; // "B4JC"
+  private static final int SEGMENT_MAGIC = 0x42344A53; // "B4JS"
+  private static final int HEADER_BYTES = 14;
+  private static final int PREALLOCATE_CHUNK = 1 << 16;
+  private static final int SLOT_BYTES = 16;
+  private static final int ACCESSED = 0x80000000;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".dat";
+
+  private final Path directory;
+  private final byte[] renderVersion;
+  private final int segmentHeaderBytes;
+  private final int segmentBytes;
+  private final int maxSegments;
+  private final boolean enabled;
+  private final List<Segment> segments = new ArrayList<>(); // Oldest first, consecutive ids
+  private FileChannel lockChannel;
+  private ByteBuffer index;
+  private int indexMask;
+  private int entries;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long compactions;
+  private boolean creatingSegment; // A put creates the next segment outside the monitor
+
+
+  //----
+  public DiskCache(BarcodeRenderer renderer, @Value("${cache.disk.directory:}") String directory,
+      @Value("${cache.disk.max-bytes:1073741824}") long maxBytes,
+      @Value("${cache.disk.segment-bytes:67108864}") int segmentBytes) {
+    this.renderVersion = renderer.getRenderVersion().getBytes(StandardCharsets.US_ASCII);
+    this.segmentHeaderBytes = 4 + renderVersion.length;
+    this.segmentBytes = Math.max(1 << 20, Math.min(segmentBytes, 1 << 30));
+    this.maxSegments = (int)Math.max(2L, maxBytes / this.segmentBytes);
+    this.directory = directory.isEmpty() ? null : Path.of(directory);
+    this.enabled = this.directory != null && open();
+  }
+
+
+  //---- Locks the directory and rebuilds the index from the existing segments of the current render
+  //     version. Returns false, and the cache stays disabled, if that fails.
+  private boolean open() {
+    newIndex(1024);
+    try {
+      Files.createDirectories(directory);
+      lockChannel = FileChannel.open(directory.resolve("lock"),
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      FileLock lock = lockChannel.tryLock();
+      if (lock == null)
+        throw new IOException("Directory is in use by another instance");
+
+      List<Long> ids;
+      try (Stream<Path> files = Files.list(directory)) {
+        ids = files.map(p -> p.getFileName().toString())
+            .filter(n -> n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_SUFFIX))
+            .map(n -> Long.valueOf(n.substring(SEGMENT_PREFIX.length(),
+                n.length() - SEGMENT_SUFFIX.length())))
+            .sorted().toList();
+      }
+      // The newest run of consecutive ids with the current render version is used. Older segments
+      // (or those beyond a gap, e.g. after deleting files by hand) and those of another render
+      // version are deleted.
+      int first = ids.size();
+      while (first > 0 && ids.size() - first < maxSegments
+          && (first == ids.size() || ids.get(first - 1) == ids.get(first) - 1)) {
+        Segment segment = mapSegment(ids.get(first - 1).intValue());
+        if (!hasRenderVersion(segment))
+          break;
+        segments.add(0, segment);
+        first--;
+      }
+      for (int i=0; i<first; i++)
+        Files.deleteIfExists(segmentPath(ids.get(i).intValue()));
+      for (Segment segment : segments)
+        scan(segment);
+      if (segments.isEmpty())
+        segments.add(mapSegment(ids.isEmpty() ? 1 : ids.get(ids.size() - 1).intValue() + 1));
+      return true;
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Disk cache disabled: " + directory + " (" + e + ")");
+      segments.clear();
+      index = null;
+      return false;
+    }
+  }
+
+
+  //----
+  @PreDestroy
+  public synchronized void close() {
+    for (Segment segment : segments)
+      segment.buffer.force();
+    segments.clear();
+    index = null;
+    try {
+      if (lockChannel != null)
+        lockChannel.close(); // Releases the lock
+    } catch (IOException e) { // Released at process exit anyway
+    }
+  }
+
+
+  //---- Returns the cached file as a read-only buffer, or 'null' if there is none
+  public ByteBuffer get(String key) {
+    if (!enabled)
+      return null;
+    final long hash = hash(key);
+    synchronized (this) {
+      if (index == null) // Closed
+        return null;
+      int slot = find(hash, key);
+      if (slot < 0) {
+        misses++;
+        return null;
+      }
+      hits++;
+      int location = slot * SLOT_BYTES;
+      int offset = index.getInt(location + 12);
+      index.putInt(location + 12, offset | ACCESSED);
+      ByteBuffer buffer = segment(index.getInt(location + 8)).buffer;
+      offset &= ~ACCESSED;
+      int dataLength = buffer.getInt(offset + 4);
+      int keyLength = buffer.getShort(offset + 12) & 0xFFFF;
+      return buffer.slice(offset + HEADER_BYTES + keyLength, dataLength).asReadOnlyBuffer();
+    }
+  }
+
+
+  //---- Appends a file, unless the key is already cached. Files larger than half a segment are not
+  //     cached.
+  public void put(String key, byte[] data) {
+    final int size = HEADER_BYTES + key.length() + data.length;
+    if (!enabled || size > segmentBytes / 2)
+      return;
+    final byte[] keyBytes = key.getBytes(StandardCharsets.US_ASCII);
+    final CRC32C crc = new CRC32C();
+    crc.update(keyBytes);
+    crc.update(data);
+    final long hash = hash(key);
+    final Segment full;
+    synchronized (this) {
+      if (index == null || find(hash, key) >= 0)
+        return;
+      full = segments.get(segments.size() - 1);
+      if (full.position + size <= full.buffer.capacity()) {
+        append(full, hash, keyBytes, data, (int)crc.getValue());
+        return;
+      }
+      if (creatingSegment) // The file is not cached rather than waiting for the new segment
+        return;
+      creatingSegment = true;
+    }
+
+    Segment next = null;
+    try {
+      full.buffer.force();
+      next = mapSegment(full.id + 1);
+    } catch (IOException e) { // E.g. disk full - the file is just not cached
+      System.err.println("Disk cache: " + e);
+    } finally {
+      synchronized (this) {
+        creatingSegment = false;
+        if (next != null && index != null)
+          addSegment(next, hash, key, keyBytes, data, (int)crc.getValue());
+      }
+    }
+  }
+
+
+  //---- Adds a new segment, evicts the oldest one if there are too many and appends the file to
+  //     the new segment, if it has not been cached meanwhile and still fits after compaction
+  private void addSegment(Segment next, long hash, String key, byte[] keyBytes, byte[] data,
+      int crc) {
+    segments.add(next);
+    try {
+      if (segments.size() > maxSegments)
+        evictOldest(next);
+    } catch (IOException e) { // The evicted segment file is deleted at the next startup
+      System.err.println("Disk cache: " + e);
+    }
+    if (find(hash, key) < 0
+        && next.position + HEADER_BYTES + keyBytes.length + data.length <= next.buffer.capacity())
+      append(next, hash, keyBytes, data, crc);
+  }
+
+
+  //---- Writes the record at the end of the segment, which must have room for it, and indexes it
+  private void append(Segment segment, long hash, byte[] keyBytes, byte[] data, int crc) {
+    final int offset = segment.position;
+    final ByteBuffer buffer = segment.buffer;
+    buffer.putInt(offset + 4, data.length);
+    buffer.putInt(offset + 8, crc);
+    buffer.putShort(offset + 12, (short)keyBytes.length);
+    buffer.put(offset + HEADER_BYTES, keyBytes);
+    buffer.put(offset + HEADER_BYTES + keyBytes.length, data);
+    commit(segment, offset, HEADER_BYTES + keyBytes.length + data.length);
+    insert(hash, segment.id, offset);
+  }
+
+
+  //----
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+
+  //---- 'weight' is the number of bytes used in the segments, including evicted records
+  public synchronized LruCache.Stats getStats() {
+    long used = 0L;
+    for (Segment segment : segments)
+      used += segment.position;
+    return new LruCache.Stats(entries, used, (long)maxSegments * segmentBytes, hits, misses,
+        evictions);
+  }
+
+
+  //---- Number of records copied forward when their segment was evicted
+  public synchronized long getCompactions() {
+    return compactions;
+  }
+
+
+  //---- Copies accessed records of the oldest segment to 'target' (as long as they take at most
+  //     half of it), removes all others from the index and deletes the segment file
+  private void evictOldest(Segment target) throws IOException {
+    final Segment oldest = segments.remove(0);
+    final int budget = target.position + target.buffer.capacity() / 2;
+    final ByteBuffer buffer = oldest.buffer;
+    for (int offset=segmentHeaderBytes; offset<oldest.position; ) {
+      int keyLength = buffer.getShort(offset + 12) & 0xFFFF;
+      int size = HEADER_BYTES + keyLength + buffer.getInt(offset + 4);
+      int slot = findLocation(hash(buffer, offset + HEADER_BYTES, keyLength), oldest.id, offset);
+      if (slot >= 0) {
+        int location = slot * SLOT_BYTES;
+        boolean accessed = (index.getInt(location + 12) & ACCESSED) != 0;
+        if (accessed && target.position + size <= budget) {
+          int copy = target.position;
+          target.buffer.put(copy + 4, buffer, offset + 4, size - 4);
+          commit(target, copy, size);
+          index.putInt(location + 8, target.id);
+          index.putInt(location + 12, copy);
+          compactions++;
+        } else {
+          remove(slot);
+          evictions++;
+        }
+      }
+      offset += size;
+    }
+    Files.deleteIfExists(segmentPath(oldest.id));
+  }
+
+
+  //---- Completes a record whose content has been written, by writing its magic last
+  private static void commit(Segment segment, int offset, int size) {
+    final ByteBuffer buffer = segment.buffer;
+    if (offset + size + 4 <= buffer.capacity())
+      buffer.putInt(offset + size, 0); // Ends the scan after a restart, should old data follow
+    buffer.putInt(offset, MAGIC);
+    segment.position = offset + size;
+  }
+
+
+  //---- Adds all valid records of the segment to the index. Later records of the same key replace
+  //     earlier ones.
+  private void scan(Segment segment) {
+    final ByteBuffer buffer = segment.buffer;
+    final CRC32C crc = new CRC32C();
+    int offset = segmentHeaderBytes;
+    while (offset + HEADER_BYTES <= buffer.capacity() && buffer.getInt(offset) == MAGIC) {
+      int dataLength = buffer.getInt(offset + 4);
+      int keyLength = buffer.getShort(offset + 12) & 0xFFFF;
+      int size = HEADER_BYTES + keyLength + dataLength;
+      if (dataLength < 0 || keyLength == 0 || size > buffer.capacity() - offset)
+        break;
+      crc.reset();
+      crc.update(buffer.slice(offset + HEADER_BYTES, keyLength + dataLength));
+      if ((int)crc.getValue() != buffer.getInt(offset + 8))
+        break;
+      String key = new String(bytes(buffer, offset + HEADER_BYTES, keyLength),
+          StandardCharsets.US_ASCII);
+      long hash = hash(key);
+      int slot = find(hash, key);
+      if (slot >= 0) {
+        index.putInt(slot * SLOT_BYTES + 8, segment.id);
+        index.putInt(slot * SLOT_BYTES + 12, offset);
+      } else {
+        insert(hash, segment.id, offset);
+      }
+      offset += size;
+    }
+    segment.position = offset;
+  }
+
+
+  //---- Maps the segment file with 'segment-bytes', or with the size it has if it is larger (after
+  //     the setting has been reduced). Missing bytes are written as zeros first, so that the file
+  //     is not sparse. A new segment gets the header of the current render version. Reads only
+  //     final fields, so it may be called outside the monitor.
+  private Segment mapSegment(int id) throws IOException {
+    try (FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      final long size = channel.size();
+      final long length = Math.max(size, segmentBytes);
+      final ByteBuffer zeros = ByteBuffer.allocate(PREALLOCATE_CHUNK);
+      for (long position=size; position<length; ) {
+        zeros.clear().limit((int)Math.min(PREALLOCATE_CHUNK, length - position));
+        position += channel.write(zeros, position);
+      }
+      Segment segment = new Segment(id, channel.map(FileChannel.MapMode.READ_WRITE, 0L, length));
+      if (size == 0L) {
+        segment.buffer.putInt(0, SEGMENT_MAGIC);
+        segment.buffer.put(4, renderVersion);
+      }
+      segment.position = segmentHeaderBytes;
+      return segment;
+    }
+  }
+
+
+  //---- Whether the segment was written with the current render version
+  private boolean hasRenderVersion(Segment segment) {
+    return segment.buffer.getInt(0) == SEGMENT_MAGIC
+        && Arrays.equals(bytes(segment.buffer, 4, renderVersion.length), renderVersion);
+  }
+
+
+  //----
+  private Path segmentPath(int id) {
+    return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+  }
+
+
+  //----
+  private Segment segment(int id) {
+    return segments.get(id - segments.get(0).id);
+  }
+
+
+  //---- Returns the slot of the key, or -1
+  private int find(long hash, String key) {
+    for (int slot=home(hash); ; slot=(slot + 1) & indexMask) {
+      long slotHash = index.getLong(slot * SLOT_BYTES);
+      if (slotHash == 0L)
+        return -1;
+      if (slotHash == hash && keyEquals(slot, key))
+        return slot;
+    }
+  }
+
+
+  //---- Returns the slot that points to the record, or -1
+  private int findLocation(long hash, int segmentId, int offset) {
+    for (int slot=home(hash); ; slot=(slot + 1) & indexMask) {
+      int location = slot * SLOT_BYTES;
+      long slotHash = index.getLong(location);
+      if (slotHash == 0L)
+        return -1;
+      if (slotHash == hash && index.getInt(location + 8) == segmentId
+          && (index.getInt(location + 12) & ~ACCESSED) == offset)
+        return slot;
+    }
+  }
+
+
+  //----
+  private boolean keyEquals(int slot, String key) {
+    final ByteBuffer buffer = segment(index.getInt(slot * SLOT_BYTES + 8)).buffer;
+    final int offset = index.getInt(slot * SLOT_BYTES + 12) & ~ACCESSED;
+    final int length = key.length();
+    if ((buffer.getShort(offset + 12) & 0xFFFF) != length)
+      return false;
+    for (int i=0; i<length; i++) {
+      if (buffer.get(offset + HEADER_BYTES + i) != key.charAt(i))
+        return false;
+    }
+    return true;
+  }
+
+
+  //---- Inserts a key that is not in the index yet. Doubles the table beyond a load of 3/4.
+  private void insert(long hash, int segmentId, int offset) {
+    if (entries + 1 > (indexMask + 1) / 4 * 3)
+      resize();
+    int slot = home(hash);
+    while (index.getLong(slot * SLOT_BYTES) != 0L)
+      slot = (slot + 1) & indexMask;
+    index.putLong(slot * SLOT_BYTES, hash);
+    index.putInt(slot * SLOT_BYTES + 8, segmentId);
+    index.putInt(slot * SLOT_BYTES + 12, offset);
+    entries++;
+  }
+
+
+  //---- Removes the slot by shifting the following slots of its probe sequence back, so that no
+  //     tombstones are needed
+  private void remove(int slot) {
+    int free = slot;
+    for (int next=(free + 1) & indexMask; ; next=(next + 1) & indexMask) {
+      long hash = index.getLong(next * SLOT_BYTES);
+      if (hash == 0L)
+        break;
+      int home = home(hash);
+      // Move the entry to the free slot, unless its home lies cyclically in (free, next]
+      boolean stays = free <= next ? free < home && home <= next : free < home || home <= next;
+      if (!stays) {
+        index.put(free * SLOT_BYTES, index, next * SLOT_BYTES, SLOT_BYTES);
+        free = next;
+      }
+    }
+    index.putLong(free * SLOT_BYTES, 0L);
+    entries--;
+  }
+
+
+  //----
+  private void resize() {
+    final ByteBuffer old = index;
+    final int oldSlots = indexMask + 1;
+    newIndex(oldSlots * 2);
+    for (int slot=0; slot<oldSlots; slot++) {
+      long hash = old.getLong(slot * SLOT_BYTES);
+      if (hash == 0L)
+        continue;
+      int target = home(hash);
+      while (index.getLong(target * SLOT_BYTES) != 0L)
+        target = (target + 1) & indexMask;
+      index.put(target * SLOT_BYTES, old, slot * SLOT_BYTES, SLOT_BYTES);
+    }
+  }
+
+
+  //---- Allocates an empty table with the given number of slots (a power of two) off the heap
+  private void newIndex(int slots) {
+    index = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+    indexMask = slots - 1;
+  }
+
+
+  //----
+  private int home(long hash) {
+    return (int)(hash ^ (hash >>> 32)) & indexMask;
+  }
+
+
+  //---- 64-bit FNV-1a of the ASCII key, never 0
+  private static long hash(String key) {
+    long h = 0xCBF29CE484222325L;
+    for (int i=0; i<key.length(); i++)
+      h = (h ^ (key.charAt(i) & 0xFF)) * 0x100000001B3L;
+    return h != 0L ? h : 1L;
+  }
+
+
+  //---- The same hash over a key stored in a segment
+  private static long hash(ByteBuffer buffer, int offset, int length) {
+    long h = 0xCBF29CE484222325L;
+    for (int i=0; i<length; i++)
+      h = (h ^ (buffer.get(offset + i) & 0xFF)) * 0x100000001B3L;
+    return h != 0L ? h : 1L;
+  }
+
+
+  //----
+  private static byte[] bytes(ByteBuffer buffer, int offset, int length) {
+    byte[] result = new byte[length];
+    buffer.get(offset, result);
+    return result;
+  }
+
+
+  //---- A mapped segment file. 'position' is where the next record is appended.
+  private static final class Segment {
+    final int id;
+    final MappedByteBuffer buffer;
+    int position;
+
+    Segment(int id, MappedByteBuffer buffer) {
+      this.id = id;
+      this.buffer = buffer;
+    }
+  }
+
+}
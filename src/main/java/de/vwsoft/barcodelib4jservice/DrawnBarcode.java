@@ -0,0 +1,33 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import de.vwsoft.barcodelib4j.image.BarExporter;
+
+
+// A validated barcode that has been drawn, but not yet encoded into its output format. Returned by
+// the BarcodeRenderer, so that the caller decides where the encoded bytes go to. Uncached output
+// is sent as a RenderService.Drawing response body, which the DrawnBarcodeConverter encodes.
+// Symbols that are written directly from their geometry come as a ModuleImage ('exporter' is null
+// then): 2D symbols in PNG or BMP format and compact SVG output.
+public record DrawnBarcode(BarExporter exporter, ModuleImage image, BarcodeRequest request,
+    RenderTrace trace) {
+
+  //----
+  public DrawnBarcode(BarExporter exporter, BarcodeRequest request, RenderTrace trace) {
+    this(exporter, null, request, trace);
+  }
+
+
+  //----
+  public void writeTo(OutputStream out) throws IOException {
+    trace.mark();
+    if (image != null)
+      image.write(out, request.format);
+    else
+      exporter.write(out, request.format, request.colorModel, request.dpi, request.dpi);
+    trace.end(RenderTrace.Stage.ENCODE);
+  }
+
+}
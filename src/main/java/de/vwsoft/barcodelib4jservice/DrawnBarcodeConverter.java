@@ -0,0 +1,72 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+
+// Writes RenderService.Drawing response bodies (uncached output): the drawn barcode is encoded into
+// a pooled buffer while the bulkhead permit is still held, then the permit is closed and only then
+// are the bytes written to the servlet output stream. So a slow client never holds a render permit
+// during network I/O, and the latency sample of the adaptive limit is the render time alone. No
+// byte array is allocated per request, and the Content-Length is known. Validation is complete
+// once a barcode has been drawn, so encoding cannot fail for reasons the client should be told
+// about after the status has been committed.
+public class DrawnBarcodeConverter extends AbstractHttpMessageConverter<RenderService.Drawing> {
+  private final BarcodeRenderer renderer;
+  private final RenderMetrics renderMetrics;
+
+
+  //----
+  public DrawnBarcodeConverter(BarcodeRenderer renderer, RenderMetrics renderMetrics) {
+    super(MediaType.ALL);
+    this.renderer = renderer;
+    this.renderMetrics = renderMetrics;
+  }
+
+
+  //----
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return RenderService.Drawing.class.isAssignableFrom(clazz);
+  }
+
+
+  //----
+  @Override
+  protected boolean canRead(MediaType mediaType) {
+    return false;
+  }
+
+
+  //---- Not called, since 'canRead' is false. Write-only like the response bodies it is for.
+  @Override
+  protected RenderService.Drawing readInternal(Class<? extends RenderService.Drawing> clazz,
+      HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("Drawing is write-only", inputMessage);
+  }
+
+
+  //---- The permit is closed here at the latest; the request's destruction callback only covers
+  //     responses that are never written
+  @Override
+  protected void writeInternal(RenderService.Drawing drawing, HttpOutputMessage outputMessage)
+      throws IOException {
+    final DrawnBarcode drawnBarcode = drawing.barcode();
+    try {
+      renderer.encode(drawnBarcode, buffer -> {
+        drawing.permit().close();
+        outputMessage.getHeaders().setContentLength(buffer.size());
+        buffer.writeTo(outputMessage.getBody());
+        renderMetrics.record(drawnBarcode.request(), drawnBarcode.trace(), 200, buffer.size());
+      });
+    } finally {
+      drawing.permit().close();
+    }
+  }
+
+}
@@ -0,0 +1,41 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+// The failed items of a batch, sheet or job for its "manifest.json". Only the first 'MAX_LISTED'
+// failures are listed with their status and message, all further ones are only counted. So the
+// manifest, which is held in memory until it concludes the ZIP file, stays small however large the
+// batch is and however many of its items fail. Not thread-safe.
+public class FailureList {
+  static final int MAX_LISTED = 1000;
+
+  private final List<Failure> listed = new ArrayList<>();
+  private int count;
+
+
+  //---- 'index' is 1-based. 'message' may be null.
+  public void add(int index, int status, String message) {
+    if (count++ < MAX_LISTED)
+      listed.add(new Failure(index, status, message));
+  }
+
+
+  //---- Number of failures, including the ones that are not listed
+  public int getCount() {
+    return count;
+  }
+
+
+  //----
+  public List<Failure> getListed() {
+    return Collections.unmodifiableList(listed);
+  }
+
+
+  //----
+  public record Failure(int index, int status, String message) {}
+
+}
@@ -0,0 +1,167 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.awt.Font;
+import java.awt.GraphicsEnvironment;
+import java.awt.font.FontRenderContext;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+
+// Provides the fonts for the human readable text of 1D barcodes. Since the application runs in
+// headless mode, fonts cannot be registered globally via GraphicsEnvironment.registerFont().
+// Instead, additional fonts (the bundled OCR-B and the TTF/OTF fonts in 'fonts.directory') are
+// loaded once at startup into an immutable map. A font is only added if it can be loaded and its
+// digits can be laid out; others are skipped with a message. Font instances are immutable and can
+// be shared by all threads. Derived sizes are cached, so that resolving a font for a request is a
+// map lookup. A digest over the names and bytes of the files in 'fonts.directory' is part of the
+// render version (see BarcodeRenderer#getRenderVersion()). The list of available font names,
+// which requires probing every system font, is collected in the background and is only waited
+// for by the first /fonts request.
+@Component
+public class FontRegistry {
+  private static final int MAX_DERIVED_FONTS = 1024; // Font names and sizes are client-controlled
+
+  private final Map<String,Font> additionalFonts;
+  private final ConcurrentHashMap<FontKey,Font> derivedFonts = new ConcurrentHashMap<>();
+  private final CompletableFuture<List<String>> availableFontNames;
+  private final byte[] fontsDigest;
+  private volatile DerivedFont lastFont; // Most requests use the same font, found without a key
+
+
+  //----
+  public FontRegistry(@Value("${fonts.directory:}") String fontsDirectory) {
+    HashMap<String,Font> fonts = new HashMap<>();
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) { // Every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+    final String[] fontFileNames = { "OCR_B.ttf" };
+    for (String fileName : fontFileNames) {
+      try (var is = new ClassPathResource(fileName).getInputStream()) {
+        addFont(fonts, is, fileName);
+      } catch (IOException e) {
+        System.err.println("Font file not found: " + fileName);
+      }
+    }
+    if (!fontsDirectory.isBlank()) {
+      try (Stream<Path> files = Files.list(Path.of(fontsDirectory))) {
+        for (Path file : files.sorted().toList()) {
+          String lower = file.getFileName().toString().toLowerCase();
+          if (lower.endsWith(".ttf") || lower.endsWith(".otf")) {
+            byte[] data = Files.readAllBytes(file);
+            digest.update(lower.getBytes(StandardCharsets.UTF_8));
+            digest.update(data);
+            addFont(fonts, new ByteArrayInputStream(data), file.toString());
+          }
+        }
+      } catch (IOException e) {
+        System.err.println("Failed to read font directory: " + fontsDirectory);
+      }
+    }
+    this.additionalFonts = Map.copyOf(fonts);
+    this.fontsDigest = digest.digest();
+    this.availableFontNames = CompletableFuture.supplyAsync(this::collectFontNames);
+  }
+
+
+  //---- Loads the font and lays out some digits with it, so that a font that loads but cannot be
+  //     drawn fails here instead of in a request
+  private static void addFont(Map<String,Font> fonts, InputStream is, String fileName) {
+    try {
+      Font font = Font.createFont(Font.TRUETYPE_FONT, is);
+      font.deriveFont(12f).createGlyphVector(new FontRenderContext(null, true, true), "0123456789")
+          .getOutline();
+      fonts.put(font.getFamily(), font);
+    } catch (Exception e) {
+      System.err.println("Failed to load font, skipped: " + fileName + " (" + e + ")");
+    }
+  }
+
+
+  //---- Returns the font of the given family in the given size (in points)
+  public Font getFont(String family, float size) {
+    final DerivedFont last = lastFont;
+    if (last != null && last.size == size && last.family.equals(family))
+      return last.font;
+    final FontKey key = new FontKey(family, size);
+    Font font = derivedFonts.get(key);
+    if (font == null) {
+      Font base = additionalFonts.get(family);
+      font = (base != null ? base : new Font(family, Font.PLAIN, 0)).deriveFont(size);
+      if (derivedFonts.size() < MAX_DERIVED_FONTS)
+        derivedFonts.putIfAbsent(key, font);
+    }
+    lastFont = new DerivedFont(family, size, font);
+    return font;
+  }
+
+
+  //---- SHA-256 over the names and contents of the font files in 'fonts.directory'
+  byte[] getFontsDigest() {
+    return fontsDigest.clone();
+  }
+
+
+  //---- Returns the sorted names of all usable fonts. Blocks only until the background collection
+  //     started at construction time has finished.
+  public List<String> getAvailableFontNames() {
+    return availableFontNames.join();
+  }
+
+
+  //----
+  private List<String> collectFontNames() {
+    GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
+
+    // Collect system fonts and filter out 1) mapped and 2) unusable ones (symbols, emojis, etc.)
+    Stream<String> systemFonts = Arrays.stream(ge.getAvailableFontFamilyNames())
+        .filter(fontName -> {
+          Font font = new Font(fontName, Font.PLAIN, 0);
+          if (!font.canDisplay('A') || !font.canDisplay('9')) // 9 = a random digit
+            return false;
+          String lower = fontName.toLowerCase();
+          return !lower.contains("symbol") && !lower.contains("wingding") &&
+                 !lower.contains("webding") && !lower.contains("dingbat") &&
+                 !lower.contains("emoji") && !lower.contains("marlett") &&
+                 !lower.contains("mt extra") &&
+                 !lower.equals("dialog") &&
+                 !lower.equals("dialoginput") &&
+                 !lower.equals("monospaced") &&
+                 !lower.equals("serif") &&
+                 !lower.equals("sansserif");
+        });
+
+    // Add the additional fonts (e.g., OCR-B from TTF files).
+    // Then combine, remove duplicates, and sort
+    return Stream.concat(systemFonts, additionalFonts.keySet().stream())
+        .distinct().sorted().toList();
+  }
+
+
+  //----
+  private record FontKey(String family, float size) {}
+
+
+  //----
+  private record DerivedFont(String family, float size, Font font) {}
+
+}
@@ -0,0 +1,98 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import de.vwsoft.barcodelib4j.oned.BarcodeException;
+import de.vwsoft.barcodelib4j.oned.GS1Validator;
+
+
+// Bulk validation of GS1 element strings without rendering. The request body is a JSON array of
+// element strings in the same syntax as the 'content' of GS1 barcode requests. Each one is parsed
+// by the GS1Parser, which rejects malformed data without touching Barcode-Lib4J. Only contents that
+// pass with AIs the parser does not know are checked by the GS1Validator as well, so each content
+// is parsed once as long as it uses the common AIs.
+//
+// This controller instance is managed as a singleton by Spring. Only one instance exists for the
+// entire application lifecycle and it is reused across all HTTP requests. Therefore, any instance
+// fields (if present) would be shared across threads and must be thread-safe.
+@RestController
+public class GS1Controller {
+  private static final char GS = 29;
+
+  private final int maxItems;
+
+
+  //----
+  public GS1Controller(@Value("${validate.gs1.max-items:10000}") int maxItems) {
+    this.maxItems = maxItems;
+  }
+
+
+  //----
+  @PostMapping("/validate/gs1")
+  public ResponseEntity<?> validateGS1(@RequestBody List<String> contents,
+      @RequestHeader(value = "Accept-Language", defaultValue = "en") String language) {
+    if (contents.size() > maxItems) {
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+          .contentType(BarcodeController.TEXT_PLAIN_UTF8)
+          .body("At most " + maxItems + " element strings per request"); // HTTP 400
+    }
+
+    final boolean useGerman = language.startsWith("de");
+    Report report = new Report(contents.size());
+    for (int i=0; i<contents.size(); i++) {
+      Item item = validate(i + 1, contents.get(i), useGerman);
+      if (item.valid)
+        report.valid++;
+      report.results.add(item);
+    }
+    return ResponseEntity.ok(report); // HTTP 200
+  }
+
+
+  //----
+  private static Item validate(int index, String content, boolean useGerman) {
+    if (content == null)
+      return new Item(index, false, null, useGerman ? "Inhalt ist leer" : "Content is empty");
+    GS1Parser.Result result = GS1Parser.parse(content);
+    if (!result.isValid())
+      return new Item(index, false, null, useGerman ? result.errMsgGerman() : result.errMsg());
+    if (!result.checked()) {
+      try {
+        new GS1Validator(GS1Parser.joinLines(content, GS), GS);
+      } catch (BarcodeException e) {
+        return new Item(index, false, null, useGerman ? e.getLocalizedMessage() : e.getMessage());
+      }
+    }
+    return new Item(index, true, result.elements(), null);
+  }
+
+
+  //----
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private record Item(int index, boolean valid, List<GS1Parser.Element> elements, String error) {}
+
+
+  //----
+  private static class Report {
+    public final int items;
+    public int valid;
+    public final List<Item> results;
+
+    Report(int items) {
+      this.items = items;
+      this.results = new ArrayList<>(items);
+    }
+  }
+
+}
@@ -0,0 +1,334 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+// Single-pass parser for GS1 element strings in human readable form, e.g. "(01)09501101530003".
+// Elements may also be given one per line or separated by <GS> (ASCII 29). The parser produces the
+// list of AI/value pairs and checks the values of the common AIs against the GS1 General
+// Specifications (length, digits, character set 82, check digit, date). AIs not in the table below
+// are passed through unchecked, which the result reports, so that only such contents need to be
+// checked by the GS1Validator of Barcode-Lib4J as well. The renderer relies on the GS1Validator
+// alone; this parser is meant to reject malformed data cheaply, without building a symbol.
+//
+// The class is stateless; all methods are thread-safe.
+final class GS1Parser {
+  //---- Format of the data field of an AI: the first 'numericLength' characters must be digits
+  //     (all of them if 'numericLength' >= 'maxLength'), the remaining ones from character set 82.
+  //     If 'checkLength' > 0, the digit at that position is a GS1 mod-10 check digit.
+  private record Spec(int minLength, int maxLength, int numericLength, int checkLength,
+      boolean date) {}
+
+  private static final Map<String,Spec> SPECS = new HashMap<>(1024);
+  static {
+    numeric("00", 18, 18, 18);
+    numeric("01", 14, 14, 14);
+    numeric("02", 14, 14, 14);
+    alphanumeric("10", 20);
+    for (String ai : new String[] { "11", "12", "13", "15", "16", "17" })
+      SPECS.put(ai, new Spec(6, 6, 6, 0, true));
+    numeric("20", 2, 2, 0);
+    alphanumeric("21", 20);
+    alphanumeric("22", 20);
+    alphanumeric("235", 28);
+    alphanumeric("240", 30);
+    alphanumeric("241", 30);
+    numeric("242", 1, 6, 0);
+    alphanumeric("243", 20);
+    alphanumeric("250", 30);
+    alphanumeric("251", 30);
+    SPECS.put("253", new Spec(13, 30, 13, 13, false));
+    alphanumeric("254", 20);
+    numeric("255", 13, 25, 13);
+    numeric("30", 1, 8, 0);
+    // Trade measures 310n-369n, except for the undefined 317n-319n, 338n-339n and 358n-359n
+    for (int[] range : new int[][] { {310, 316}, {320, 337}, {340, 357}, {360, 369} }) {
+      for (int i=range[0]*10; i<=range[1]*10+9; i++)
+        numeric(Integer.toString(i), 6, 6, 0);
+    }
+    numeric("37", 1, 8, 0);
+    for (int n=0; n<10; n++) {
+      numeric("390" + n, 1, 15, 0);
+      numeric("391" + n, 4, 18, 0);
+      numeric("392" + n, 1, 15, 0);
+      numeric("393" + n, 4, 18, 0);
+      numeric("394" + n, 4, 4, 0);
+      numeric("395" + n, 6, 6, 0);
+    }
+    alphanumeric("400", 30);
+    alphanumeric("401", 30);
+    numeric("402", 17, 17, 17);
+    alphanumeric("403", 30);
+    for (int i=410; i<=417; i++)
+      numeric(Integer.toString(i), 13, 13, 13);
+    alphanumeric("420", 20);
+    SPECS.put("421", new Spec(4, 12, 3, 0, false));
+    numeric("422", 3, 3, 0);
+    numeric("423", 4, 15, 0);
+    numeric("424", 3, 3, 0);
+    numeric("425", 4, 15, 0);
+    numeric("426", 3, 3, 0);
+    alphanumeric("427", 3);
+    numeric("7001", 13, 13, 0);
+    alphanumeric("7002", 30);
+    numeric("7003", 10, 10, 0);
+    numeric("7004", 1, 4, 0);
+    alphanumeric("7005", 12);
+    SPECS.put("7006", new Spec(6, 6, 6, 0, true));
+    numeric("7007", 6, 12, 0);
+    alphanumeric("7008", 3);
+    alphanumeric("7009", 10);
+    alphanumeric("7010", 2);
+    numeric("8001", 14, 14, 0);
+    alphanumeric("8002", 20);
+    SPECS.put("8003", new Spec(14, 30, 14, 14, false));
+    alphanumeric("8004", 30);
+    numeric("8005", 6, 6, 0);
+    numeric("8006", 18, 18, 14);
+    alphanumeric("8007", 34);
+    numeric("8008", 8, 12, 0);
+    numeric("8011", 1, 12, 0);
+    alphanumeric("8012", 20);
+    alphanumeric("8013", 25);
+    numeric("8017", 18, 18, 18);
+    numeric("8018", 18, 18, 18);
+    numeric("8019", 1, 10, 0);
+    alphanumeric("8020", 25);
+    alphanumeric("8200", 70);
+    alphanumeric("90", 30);
+    for (int i=91; i<=99; i++)
+      alphanumeric(Integer.toString(i), 90);
+  }
+
+  // GS1 AI encodable character set 82
+  private static final boolean[] CSET82 = new boolean[128];
+  static {
+    String chars = "!\"%&'()*+,-./0123456789:;<=>?"
+        + "ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+    for (int i=0; i<chars.length(); i++)
+      CSET82[chars.charAt(i)] = true;
+  }
+
+
+  //----
+  record Element(String ai, String value) {}
+
+
+  //---- Either the parsed elements or the error message in English and German. 'checked' tells
+  //     whether all elements have an AI of the table above, i.e. have been checked completely.
+  record Result(List<Element> elements, boolean checked, String errMsg, String errMsgGerman) {
+    boolean isValid() {
+      return errMsg == null;
+    }
+  }
+
+
+  //----
+  private GS1Parser() {}
+
+
+  //----
+  private static void numeric(String ai, int minLength, int maxLength, int checkLength) {
+    SPECS.put(ai, new Spec(minLength, maxLength, maxLength, checkLength, false));
+  }
+
+
+  //----
+  private static void alphanumeric(String ai, int maxLength) {
+    SPECS.put(ai, new Spec(1, maxLength, 0, 0, false));
+  }
+
+
+  //---- Joins the lines of 'content' with 'fnc1', after trimming them and dropping empty lines and
+  //     lines that consist of an AI only. Returns 'content' itself if there is nothing to change.
+  //     Replaces a String#split/trim/regex implementation, with identical results.
+  static String joinLines(String content, char fnc1) {
+    int end = content.length(); // Trailing empty lines are ignored entirely
+    while (end > 0 && content.charAt(end - 1) == '\n')
+      end--;
+    int lineEnd = content.indexOf('\n');
+    if (lineEnd < 0 || lineEnd >= end) { // Single line: the common case, possibly no allocation
+      int start = trimStart(content, 0, end);
+      int stop = trimEnd(content, start, end);
+      return isAIOnly(content, start, stop) ? "" : content.substring(start, stop);
+    }
+
+    StringBuilder sb = new StringBuilder(end + 8);
+    int lineStart = 0;
+    while (lineStart < end) {
+      lineEnd = content.indexOf('\n', lineStart);
+      if (lineEnd < 0 || lineEnd > end)
+        lineEnd = end;
+      int start = trimStart(content, lineStart, lineEnd);
+      int stop = trimEnd(content, start, lineEnd);
+      if (start < stop && !isAIOnly(content, start, stop)) {
+        sb.append(content, start, stop);
+        if (lineEnd != end && content.charAt(stop - 1) != fnc1)
+          sb.append(fnc1);
+      }
+      lineStart = lineEnd + 1;
+    }
+    return sb.toString();
+  }
+
+
+  //---- Parses and checks all elements in a single pass over 'content'
+  static Result parse(String content) {
+    return parse(content, Year.now(ZoneOffset.UTC).getValue());
+  }
+
+
+  //---- The same, with the current year that dates are resolved against
+  static Result parse(String content, int currentYear) {
+    final int length = content.length();
+    List<Element> elements = new ArrayList<>(4);
+    boolean checked = true;
+    int i = 0;
+    boolean lineStart = true;
+    while (true) {
+      while (i < length && content.charAt(i) <= ' ') { // Line breaks, <GS>, blanks
+        if (content.charAt(i) == '\n')
+          lineStart = true;
+        i++;
+      }
+      if (i == length)
+        break;
+
+      int aiEnd = aiEnd(content, i);
+      if (aiEnd < 0) {
+        return error("Element " + (elements.size() + 1) + ": AI in parentheses expected",
+            "Element " + (elements.size() + 1) + ": Datenbezeichner in Klammern erwartet");
+      }
+      String ai = content.substring(i + 1, aiEnd - 1);
+      int valueEnd = aiEnd;
+      while (valueEnd < length && content.charAt(valueEnd) > ' '
+          && !(content.charAt(valueEnd) == '(' && aiEnd(content, valueEnd) > 0))
+        valueEnd++;
+
+      if (valueEnd == aiEnd) { // An AI alone on its line is ignored, like in 'joinLines'
+        int next = valueEnd;
+        while (next < length && content.charAt(next) <= ' ' && content.charAt(next) != '\n')
+          next++;
+        if (lineStart && (next == length || content.charAt(next) == '\n')) {
+          i = valueEnd;
+          continue;
+        }
+        return error("AI (" + ai + "): data missing", "AI (" + ai + "): Daten fehlen");
+      }
+
+      String value = content.substring(aiEnd, valueEnd);
+      Result error = check(ai, value, currentYear);
+      if (error != null)
+        return error;
+      elements.add(new Element(ai, value));
+      checked &= SPECS.containsKey(ai);
+      i = valueEnd;
+      lineStart = false;
+    }
+
+    if (elements.isEmpty())
+      return error("Content is empty", "Inhalt ist leer");
+    return new Result(elements, checked, null, null);
+  }
+
+
+  //---- Returns null if 'value' is valid for 'ai' or AI is unknown, otherwise an error result
+  private static Result check(String ai, String value, int currentYear) {
+    Spec spec = SPECS.get(ai);
+    if (spec == null)
+      return null;
+    final int length = value.length();
+    if (length < spec.minLength || length > spec.maxLength) {
+      String range = spec.minLength == spec.maxLength ? Integer.toString(spec.maxLength)
+                                                      : spec.minLength + "-" + spec.maxLength;
+      return error("AI (" + ai + "): " + range + " characters required",
+          "AI (" + ai + "): " + range + " Zeichen erforderlich");
+    }
+    for (int i=0; i<length; i++) {
+      char c = value.charAt(i);
+      if (i < spec.numericLength) {
+        if (c < '0' || c > '9')
+          return error("AI (" + ai + "): digits only", "AI (" + ai + "): nur Ziffern erlaubt");
+      } else if (c >= 128 || !CSET82[c]) {
+        return error("AI (" + ai + "): invalid character '" + c + "'",
+            "AI (" + ai + "): ung\u00FCltiges Zeichen '" + c + "'");
+      }
+    }
+    if (spec.checkLength > 0 && !hasValidCheckDigit(value, spec.checkLength))
+      return error("AI (" + ai + "): invalid check digit",
+          "AI (" + ai + "): ung\u00FCltige Pr\u00FCfziffer");
+    if (spec.date && !isValidDate(value, currentYear))
+      return error("AI (" + ai + "): invalid date", "AI (" + ai + "): ung\u00FCltiges Datum");
+    return null;
+  }
+
+
+  //---- GS1 mod-10 check digit at position 'length' - 1, weights 3 and 1 from right to left
+  private static boolean hasValidCheckDigit(String digits, int length) {
+    int sum = 0;
+    for (int i=length-2, weight=3; i>=0; i--, weight=4-weight)
+      sum += (digits.charAt(i) - '0') * weight;
+    return (10 - sum % 10) % 10 == digits.charAt(length - 1) - '0';
+  }
+
+
+  //---- YYMMDD; day 00 stands for the last day of the month. The century, which decides whether
+  //     a YY00 is a leap year, is determined as in the GS1 General Specifications (7.12): the year
+  //     lies at most 49 years before or 50 years after the current one.
+  private static boolean isValidDate(String date, int currentYear) {
+    int year = (date.charAt(0) - '0') * 10 + (date.charAt(1) - '0');
+    int month = (date.charAt(2) - '0') * 10 + (date.charAt(3) - '0');
+    int day = (date.charAt(4) - '0') * 10 + (date.charAt(5) - '0');
+    if (month < 1 || month > 12)
+      return false;
+    final int difference = year - currentYear % 100;
+    year += currentYear / 100 * 100 + (difference >= 51 ? -100 : difference <= -50 ? 100 : 0);
+    return day <= YearMonth.of(year, month).lengthOfMonth();
+  }
+
+
+  //---- Returns the index after ")" if an AI of 2 to 4 digits in parentheses starts at 'i', else -1
+  private static int aiEnd(String s, int i) {
+    if (s.charAt(i) != '(')
+      return -1;
+    int j = i + 1;
+    while (j < s.length() && j - i <= 4 && s.charAt(j) >= '0' && s.charAt(j) <= '9')
+      j++;
+    return j - i - 1 >= 2 && j < s.length() && s.charAt(j) == ')' ? j + 1 : -1;
+  }
+
+
+  //----
+  private static boolean isAIOnly(String s, int start, int stop) {
+    return stop - start >= 4 && aiEnd(s, start) == stop;
+  }
+
+
+  //---- Like String#trim, all characters up to and including ' ' count as whitespace
+  private static int trimStart(String s, int start, int stop) {
+    while (start < stop && s.charAt(start) <= ' ')
+      start++;
+    return start;
+  }
+
+
+  //----
+  private static int trimEnd(String s, int start, int stop) {
+    while (stop > start && s.charAt(stop - 1) <= ' ')
+      stop--;
+    return stop;
+  }
+
+
+  //----
+  private static Result error(String errMsg, String errMsgGerman) {
+    return new Result(null, false, errMsg, errMsgGerman);
+  }
+
+}
@@ -0,0 +1,64 @@
+package de.vwsoft.barcodelib4jservice;
+
+
+// Adaptive concurrency limit based on the gradient between the long-term and the short-term
+// render latency (modeled after the "Gradient2" algorithm of Netflix's concurrency-limits). As
+// long as latency stays at its long-term level, the limit grows by a small queue allowance
+// (sqrt(limit)). When renders start to queue up for CPU, the short-term latency rises above the
+// long-term latency and the limit shrinks proportionally. The long-term average is pulled down
+// after sustained overload, so the limit can recover once the load drops. Not thread-safe; the
+// RenderBulkhead calls it while holding its lock.
+public class GradientLimit {
+  private static final int LONG_WINDOW = 600;
+  private static final int SHORT_WINDOW = 10;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double smoothing;
+  private double limit;
+  private double longRtt;
+  private double shortRtt;
+
+
+  //----
+  public GradientLimit(int initialLimit, int minLimit, int maxLimit, double smoothing) {
+    this.minLimit = Math.max(1, minLimit);
+    this.maxLimit = Math.max(this.minLimit, maxLimit);
+    this.smoothing = smoothing;
+    this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+  }
+
+
+  //---- Adds the latency of a finished render and returns the new limit. 'inFlight' is the
+  //     number of renders that were running when it was started.
+  public int onSample(long rttNanos, int inFlight) {
+    if (longRtt == 0.0) {
+      longRtt = shortRtt = rttNanos;
+      return getLimit();
+    }
+    shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+    longRtt += (rttNanos - longRtt) / LONG_WINDOW;
+
+    // After a phase of overload the long-term latency has drifted upwards. Let it decay faster,
+    // otherwise the gradient would stay near 1.0 and the limit would not come down again.
+    if (longRtt / shortRtt > 2.0)
+      longRtt *= 0.95;
+
+    // If far fewer renders are running than permitted, the latency says nothing about capacity
+    if (inFlight < limit / 2.0)
+      return getLimit();
+
+    final double gradient = Math.max(0.5, Math.min(1.0, longRtt / shortRtt));
+    final double newLimit = limit * gradient + Math.sqrt(limit);
+    final double smoothedLimit = limit * (1.0 - smoothing) + newLimit * smoothing;
+    limit = Math.max(minLimit, Math.min(maxLimit, smoothedLimit));
+    return getLimit();
+  }
+
+
+  //----
+  public int getLimit() {
+    return (int)limit;
+  }
+
+}
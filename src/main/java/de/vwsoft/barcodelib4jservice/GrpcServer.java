@@ -0,0 +1,81 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+
+// Runs the gRPC server (HTTP/2, plaintext) for the BarcodeGrpcService on 'grpc.port', started and
+// stopped together with the application context. Call handlers run on the worker pool of the
+// service rather than on gRPC's default unbounded thread pool.
+//
+// 'grpc.enabled' is checked at run time (see "Cold Start" in the README).
+@Component
+public class GrpcServer implements SmartLifecycle {
+  private final BarcodeGrpcService service;
+  private final boolean enabled;
+  private final int port;
+  private final int maxMessageBytes;
+  private volatile Server server;
+
+
+  //----
+  public GrpcServer(BarcodeGrpcService service,
+      @Value("${grpc.enabled:true}") boolean enabled,
+      @Value("${grpc.port:9090}") int port,
+      @Value("${grpc.max-message-bytes:4194304}") int maxMessageBytes) {
+    this.service = service;
+    this.enabled = enabled;
+    this.port = port;
+    this.maxMessageBytes = maxMessageBytes;
+  }
+
+
+  //----
+  @Override
+  public void start() {
+    if (!enabled)
+      return;
+    try {
+      server = ServerBuilder.forPort(port)
+          .executor(service.getExecutor())
+          .maxInboundMessageSize(maxMessageBytes)
+          .addService(service)
+          .build()
+          .start();
+    } catch (IOException e) {
+      throw new IllegalStateException("gRPC server could not be started on port " + port, e);
+    }
+  }
+
+
+  //---- Lets running calls finish for a few seconds, then cancels them
+  @Override
+  public void stop() {
+    Server s = server;
+    if (s == null)
+      return;
+    s.shutdown();
+    try {
+      if (!s.awaitTermination(5, TimeUnit.SECONDS))
+        s.shutdownNow();
+    } catch (InterruptedException e) {
+      s.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    server = null;
+  }
+
+
+  //----
+  @Override
+  public boolean isRunning() {
+    return server != null;
+  }
+
+}
@@ -0,0 +1,167 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+
+// Actuator endpoint 'jfr' that controls a continuous JDK Flight Recorder recording with the JDK's
+// low-overhead "default" settings plus the RenderEvent, kept on disk for 'jfr.max-age-minutes':
+//
+//   GET  /actuator/jfr                     status of the recording
+//   POST /actuator/jfr/start               starts the recording (if not yet running)
+//   POST /actuator/jfr/stop                stops and discards it
+//   POST /actuator/jfr/dump?minutes=5      writes the last minutes into 'jfr.dump.directory'
+//
+// The file name is chosen by the service and returned; the file can be opened in JDK Mission
+// Control. Like every Actuator endpoint, 'jfr' is served on the (non-public) management port and
+// only reachable once it is added to 'management.endpoints.web.exposure.include'. With
+// 'jfr.recording.enabled', the recording starts with the application.
+@Component
+@Endpoint(id = "jfr")
+public class JfrRecordingEndpoint {
+  private static final String RECORDING_NAME = "barcode-service";
+  private static final DateTimeFormatter FILE_TIMESTAMP =
+      DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+  private final boolean startOnStartup;
+  private final int maxAgeMinutes;
+  private final long maxSizeBytes;
+  private final Path dumpDirectory;
+  private Recording recording; // Guarded by 'this'
+
+
+  //----
+  public JfrRecordingEndpoint(@Value("${jfr.recording.enabled:false}") boolean startOnStartup,
+      @Value("${jfr.max-age-minutes:30}") int maxAgeMinutes,
+      @Value("${jfr.max-size-bytes:268435456}") long maxSizeBytes,
+      @Value("${jfr.dump.directory:}") String dumpDirectory) {
+    this.startOnStartup = startOnStartup;
+    this.maxAgeMinutes = Math.max(1, maxAgeMinutes);
+    this.maxSizeBytes = maxSizeBytes;
+    this.dumpDirectory = Path.of(dumpDirectory.isBlank() ?
+        System.getProperty("java.io.tmpdir") : dumpDirectory);
+  }
+
+
+  //----
+  @PostConstruct
+  public void startIfEnabled() {
+    if (startOnStartup)
+      start();
+  }
+
+
+  //----
+  @PreDestroy
+  public synchronized void shutdown() {
+    if (recording != null) {
+      recording.close();
+      recording = null;
+    }
+  }
+
+
+  //----
+  @ReadOperation
+  public synchronized Map<String,Object> status() {
+    Map<String,Object> status = new LinkedHashMap<>();
+    status.put("running", recording != null);
+    status.put("maxAgeMinutes", maxAgeMinutes);
+    status.put("dumpDirectory", dumpDirectory.toString());
+    if (recording != null) {
+      status.put("id", recording.getId());
+      status.put("startTime", String.valueOf(recording.getStartTime()));
+      status.put("sizeBytes", recording.getSize());
+    }
+    return status;
+  }
+
+
+  //---- 'minutes' applies to "dump" only and defaults to the max. age of the recording
+  @WriteOperation
+  public synchronized Map<String,Object> control(@Selector String action,
+      @Nullable Integer minutes) throws IOException {
+    switch (action) {
+      case "start" -> start();
+      case "stop" -> shutdown();
+      case "dump" -> {
+        return dump(minutes != null ? Math.max(1, Math.min(minutes, maxAgeMinutes)) :
+            maxAgeMinutes);
+      }
+      default -> throw new InvalidEndpointRequestException("Unknown action: " + action,
+          "Unknown action");
+    }
+    return status();
+  }
+
+
+  //----
+  private synchronized void start() {
+    if (recording != null)
+      return;
+    try {
+      Recording r = new Recording(Configuration.getConfiguration("default"));
+      r.setName(RECORDING_NAME);
+      r.setToDisk(true);
+      r.setMaxAge(Duration.ofMinutes(maxAgeMinutes));
+      r.setMaxSize(maxSizeBytes);
+      r.enable(RenderEvent.class);
+      r.start();
+      recording = r;
+    } catch (IOException | ParseException e) { // The "default" settings are part of every JDK
+      throw new IllegalStateException("JFR settings could not be loaded", e);
+    }
+  }
+
+
+  //---- Recording#dump always writes everything that is retained. The JFR.dump diagnostic command
+  //     (the one behind 'jcmd <pid> JFR.dump') can limit the dump to the last minutes.
+  private Map<String,Object> dump(int minutes) throws IOException {
+    if (recording == null)
+      throw new InvalidEndpointRequestException("No recording running", "No recording running");
+    Files.createDirectories(dumpDirectory);
+    final String fileName =
+        RECORDING_NAME + '-' + FILE_TIMESTAMP.format(LocalDateTime.now()) + ".jfr";
+    final Path file = dumpDirectory.resolve(fileName).toAbsolutePath();
+    try {
+      ManagementFactory.getPlatformMBeanServer().invoke(
+          new ObjectName("com.sun.management:type=DiagnosticCommand"), "jfrDump",
+          new Object[] { new String[] { "name=" + recording.getId(),
+              "filename=\"" + file + '"', "begin=-" + minutes + "m" } },
+          new String[] { String[].class.getName() });
+    } catch (JMException e) {
+      throw new IOException("JFR dump failed", e);
+    }
+
+    Map<String,Object> result = new LinkedHashMap<>();
+    result.put("file", file.toString());
+    result.put("minutes", minutes);
+    result.put("sizeBytes", Files.size(file));
+    return result;
+  }
+
+}
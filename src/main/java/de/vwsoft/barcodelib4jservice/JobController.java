@@ -0,0 +1,106 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+import jakarta.validation.Valid;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+
+// Asynchronous render jobs for large runs that must not compete with interactive requests. POST
+// /jobs queues the job and answers HTTP 202 with its status and a Location header; the status is
+// polled at GET /jobs/{id} and, once the state is DONE, the ZIP file is downloaded from
+// GET /jobs/{id}/result. DELETE /jobs/{id} cancels a job or deletes its result. Scheduling and
+// spooling happen in the JobScheduler.
+//
+// This controller instance is managed as a singleton by Spring. Only one instance exists for the
+// entire application lifecycle and it is reused across all HTTP requests. Therefore, any instance
+// fields (if present) would be shared across threads and must be thread-safe.
+@RestController
+public class JobController {
+  private final JobScheduler scheduler;
+  private final RenderService renderService;
+
+
+  //----
+  public JobController(JobScheduler scheduler, RenderService renderService) {
+    this.scheduler = scheduler;
+    this.renderService = renderService;
+  }
+
+
+  //----
+  @PostMapping("/jobs")
+  public ResponseEntity<?> createJob(@Valid @RequestBody JobRequest request,
+      @RequestHeader(value = "Accept-Language", defaultValue = "en") String language) {
+    final JobScheduler.Status status;
+    try {
+      status = scheduler.submit(request, language.startsWith("de"));
+    } catch (RenderException e) { // HTTP 400 or 503
+      var builder = ResponseEntity.status(e.status).contentType(BarcodeController.TEXT_PLAIN_UTF8);
+      if (e.status == HttpStatus.SERVICE_UNAVAILABLE)
+        builder.header("Retry-After", Integer.toString(renderService.getRetryAfterSeconds()));
+      return builder.body(e.getMessage());
+    }
+    return ResponseEntity.accepted().location(URI.create("/jobs/" + status.id()))
+        .cacheControl(CacheControl.noStore()).body(status); // HTTP 202
+  }
+
+
+  //----
+  @GetMapping("/jobs/{id}")
+  public ResponseEntity<?> getJob(@PathVariable String id) {
+    JobScheduler.Status status = scheduler.getStatus(id);
+    if (status == null)
+      return notFound();
+    return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(status); // HTTP 200
+  }
+
+
+  //----
+  @GetMapping("/jobs/{id}/result")
+  public ResponseEntity<?> getJobResult(@PathVariable String id) {
+    JobScheduler.Status status = scheduler.getStatus(id);
+    if (status == null)
+      return notFound();
+    Path file = scheduler.getResult(id);
+    if (file == null) {
+      return ResponseEntity.status(HttpStatus.CONFLICT).cacheControl(CacheControl.noStore())
+          .contentType(BarcodeController.TEXT_PLAIN_UTF8)
+          .body(status.error() != null ? "Job failed: " + status.error()
+              : "Job not finished yet"); // HTTP 409
+    }
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType("application/zip"))
+        .cacheControl(CacheControl.noStore())
+        .header("Access-Control-Expose-Headers", "Content-Disposition")
+        .header("Content-Disposition", "attachment; filename=\"job-" + id + ".zip\"")
+        .body(new FileSystemResource(file)); // HTTP 200
+  }
+
+
+  //----
+  @DeleteMapping("/jobs/{id}")
+  public ResponseEntity<?> deleteJob(@PathVariable String id) {
+    return scheduler.delete(id) ? ResponseEntity.noContent().build() : notFound(); // HTTP 204
+  }
+
+
+  //----
+  private static ResponseEntity<?> notFound() {
+    return ResponseEntity.status(HttpStatus.NOT_FOUND).cacheControl(CacheControl.noStore())
+        .contentType(BarcodeController.TEXT_PLAIN_UTF8).body("Unknown job"); // HTTP 404
+  }
+
+}
@@ -0,0 +1,27 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.List;
+import java.util.Map;
+
+import jakarta.validation.constraints.NotEmpty;
+
+
+// Request body of POST /jobs: the barcodes of an asynchronous render job and its priority class
+// (default NORMAL). Each item holds either a "barcode1d" or a "barcode2d" object, bound like the
+// JSON body of /create1d or /create2d. Items are bound when they are rendered, so that an invalid
+// item does not reject the job, but is listed in its manifest.
+public record JobRequest(
+    Priority priority,
+
+    @NotEmpty(message = "Items are required")
+    List<Item> items) {
+
+
+  //---- Share of the job workers while jobs of several classes are queued, see JobScheduler
+  public enum Priority { HIGH, NORMAL, BULK }
+
+
+  //---- Exactly one of both is expected
+  public record Item(Map<String,Object> barcode1d, Map<String,Object> barcode2d) {}
+
+}
@@ -0,0 +1,452 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+// Runs the asynchronous render jobs of POST /jobs on a fixed pool of workers ('jobs.threads').
+// Each priority class has a queue of jobs and a weight ('jobs.weight.*'). While several classes
+// have items left, a worker takes the next item from the class with the lowest pass, which then
+// advances by 1/weight (stride scheduling), so the classes share the workers in the ratio of their
+// weights and none starves. A class that was idle starts at the current pass and gets no credit
+// for the idle time. Within a class, the jobs take turns item by item.
+//
+// Items are rendered with background permits of the render bulkhead (see RenderService), so
+// interactive requests waiting for a permit always come first, however much job work is queued.
+// Each finished item is written to the job's ZIP file in 'jobs.directory' right away, so results
+// never accumulate on the heap; a "manifest.json" like that of the batch endpoints concludes it.
+// Jobs are kept in memory only: finished jobs are deleted after 'jobs.retention-minutes'. Without
+// 'jobs.directory', each instance spools into a new temporary directory of its own, deleted at
+// shutdown. A configured directory must not be shared by instances: the spool files of a previous
+// run are deleted from it at startup.
+//
+// Managed as a singleton by Spring and used concurrently by many threads. The queues are guarded
+// by the scheduler's lock, the state and the ZIP file of a job by the job's monitor.
+@Component
+public class JobScheduler {
+  private static final String FILE_PREFIX = "job-";
+  private static final String FILE_SUFFIX = ".zip";
+
+  private final RenderService renderService;
+  private final QueryRequestMapper requestMapper;
+  private final ObjectMapper objectMapper;
+  private final Path directory;
+  private final boolean temporaryDirectory;
+  private final int maxItems;
+  private final int maxQueued;
+  private final long retentionNanos;
+  private final ExecutorService executor;
+  private final Map<String,Job> jobs = new ConcurrentHashMap<>();
+  private final Map<JobRequest.Priority,PriorityClass> classes =
+      new EnumMap<>(JobRequest.Priority.class);
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition workAvailable = lock.newCondition();
+  private double virtualTime; // Pass of the class served last
+
+
+  //----
+  public JobScheduler(RenderService renderService, QueryRequestMapper requestMapper,
+      ObjectMapper objectMapper, MeterRegistry registry,
+      @Value("${jobs.threads:0}") int threads,
+      @Value("${jobs.max-items:100000}") int maxItems,
+      @Value("${jobs.max-queued:100}") int maxQueued,
+      @Value("${jobs.weight.high:8}") int highWeight,
+      @Value("${jobs.weight.normal:4}") int normalWeight,
+      @Value("${jobs.weight.bulk:1}") int bulkWeight,
+      @Value("${jobs.directory:}") String directory,
+      @Value("${jobs.retention-minutes:60}") long retentionMinutes) {
+    this.renderService = renderService;
+    this.requestMapper = requestMapper;
+    this.objectMapper = objectMapper;
+    this.maxItems = maxItems;
+    this.maxQueued = maxQueued;
+    this.retentionNanos = TimeUnit.MINUTES.toNanos(retentionMinutes);
+    this.temporaryDirectory = directory.isEmpty();
+    this.directory = temporaryDirectory ? createTemporaryDirectory() : Path.of(directory);
+    deleteSpoolFiles();
+
+    classes.put(JobRequest.Priority.HIGH, new PriorityClass(highWeight));
+    classes.put(JobRequest.Priority.NORMAL, new PriorityClass(normalWeight));
+    classes.put(JobRequest.Priority.BULK, new PriorityClass(bulkWeight));
+    classes.forEach((priority, priorityClass) ->
+        Gauge.builder("barcode.jobs.queued.items", priorityClass, this::getQueuedItems)
+            .tag("priority", priority.name().toLowerCase())
+            .description("Job items not yet started").register(registry));
+
+    final int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    final AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+      Thread t = new Thread(runnable, "job-render-" + threadNumber.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    for (int i=0; i<workers; i++)
+      executor.execute(this::work);
+  }
+
+
+  //----
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+    if (temporaryDirectory) {
+      try {
+        deleteSpoolFiles();
+        Files.deleteIfExists(directory);
+      } catch (IllegalStateException | IOException e) { // Left to the cleanup of the OS
+      }
+    }
+  }
+
+
+  //----
+  private static Path createTemporaryDirectory() {
+    try {
+      return Files.createTempDirectory("barcodelib4j-jobs-");
+    } catch (IOException e) {
+      throw new IllegalStateException("Job directory not usable: java.io.tmpdir", e);
+    }
+  }
+
+
+  //---- Creates the spool directory, or removes the files that jobs of a previous run left in it
+  private void deleteSpoolFiles() {
+    try {
+      Files.createDirectories(directory);
+      try (Stream<Path> files = Files.list(directory)) {
+        for (Path file : (Iterable<Path>)files::iterator) {
+          String name = file.getFileName().toString();
+          if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX))
+            Files.deleteIfExists(file);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Job directory not usable: " + directory, e);
+    }
+  }
+
+
+  //---- Queues a new job. Throws an exception with HTTP status 400 (too many items) or 503 (too
+  //     many jobs queued, or the spool file could not be created).
+  public Status submit(JobRequest request, boolean useGerman) throws RenderException {
+    purge();
+    if (request.items().size() > maxItems)
+      throw RenderException.badRequest("A job must not have more than " + maxItems + " items");
+    if (jobs.values().stream().filter(job -> !job.isFinished()).count() >= maxQueued)
+      throw RenderException.unavailable("Too many jobs queued, please retry later");
+
+    final JobRequest.Priority priority =
+        request.priority() != null ? request.priority() : JobRequest.Priority.NORMAL;
+    final Job job = new Job(UUID.randomUUID().toString(), priority, request.items(), useGerman);
+    try {
+      job.open();
+    } catch (IOException e) {
+      throw RenderException.unavailable("Job could not be stored, please retry later");
+    }
+    jobs.put(job.id, job);
+
+    lock.lock();
+    try {
+      PriorityClass priorityClass = classes.get(priority);
+      if (priorityClass.queue.isEmpty()) // No credit for the time the class was idle
+        priorityClass.pass = Math.max(priorityClass.pass, virtualTime);
+      priorityClass.queue.add(job);
+      priorityClass.queuedItems += job.items.size();
+      workAvailable.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    return job.getStatus();
+  }
+
+
+  //---- Returns 'null' for unknown (or deleted) jobs
+  public Status getStatus(String id) {
+    purge();
+    Job job = jobs.get(id);
+    return job != null ? job.getStatus() : null;
+  }
+
+
+  //---- Returns the ZIP file of a finished job, or 'null' if the job is unknown or not finished
+  public Path getResult(String id) {
+    Job job = jobs.get(id);
+    return job != null && job.getStatus().state() == State.DONE ? job.file : null;
+  }
+
+
+  //---- Cancels the job if it is not finished yet and deletes it. Returns false for unknown jobs.
+  public boolean delete(String id) {
+    final Job job = jobs.remove(id);
+    if (job == null)
+      return false;
+    lock.lock();
+    try {
+      PriorityClass priorityClass = classes.get(job.priority);
+      if (priorityClass.queue.remove(job))
+        priorityClass.queuedItems -= job.items.size() - job.next;
+    } finally {
+      lock.unlock();
+    }
+    job.cancel();
+    return true;
+  }
+
+
+  //---- Deletes the jobs that finished more than 'jobs.retention-minutes' ago
+  private void purge() {
+    final long now = System.nanoTime();
+    jobs.values().removeIf(job -> {
+      if (!job.isExpired(now))
+        return false;
+      job.cancel(); // Deletes the file
+      return true;
+    });
+  }
+
+
+  //---- Worker loop, until the pool is shut down
+  private void work() {
+    try {
+      while (true) {
+        Task task = next();
+        task.job().render(task.index());
+      }
+    } catch (InterruptedException e) { // Shut down
+    }
+  }
+
+
+  //---- Waits for the next item: from the class with the lowest pass, and within the class from
+  //     the job at the head of its queue, which then moves to the tail
+  private Task next() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (true) {
+        PriorityClass selected = null;
+        for (PriorityClass priorityClass : classes.values()) { // On equal pass, HIGH first
+          if (!priorityClass.queue.isEmpty()
+              && (selected == null || priorityClass.pass < selected.pass))
+            selected = priorityClass;
+        }
+        if (selected != null) {
+          virtualTime = selected.pass;
+          selected.pass += selected.stride;
+          selected.queuedItems--;
+          Job job = selected.queue.poll();
+          int index = job.next++;
+          if (job.next < job.items.size())
+            selected.queue.add(job);
+          return new Task(job, index);
+        }
+        workAvailable.await();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  //----
+  private long getQueuedItems(PriorityClass priorityClass) {
+    lock.lock();
+    try {
+      return priorityClass.queuedItems;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  //----
+  public enum State { QUEUED, RUNNING, DONE, FAILED }
+
+  public record Status(String id, JobRequest.Priority priority, State state, int items,
+      int completed, int succeeded, int failed, String error) {}
+
+
+  //----
+  private record Task(Job job, int index) {}
+
+
+  //---- Queue and pass of a priority class, guarded by the scheduler's lock
+  private static final class PriorityClass {
+    final ArrayDeque<Job> queue = new ArrayDeque<>();
+    final double stride;
+    double pass;
+    long queuedItems;
+
+    PriorityClass(int weight) {
+      this.stride = 1.0 / Math.max(1, weight);
+    }
+  }
+
+
+  //---- A job and its ZIP file. 'next' is guarded by the scheduler's lock, all other mutable
+  //     fields by the job's monitor.
+  private final class Job {
+    final String id;
+    final JobRequest.Priority priority;
+    final List<JobRequest.Item> items;
+    final boolean useGerman;
+    final Path file;
+    int next;
+    private ZipOutputStream zip;
+    private State state = State.QUEUED;
+    private int completed;
+    private int succeeded;
+    private final FailureList failures = new FailureList();
+    private String error;
+    private long finishedAt;
+
+
+    //----
+    Job(String id, JobRequest.Priority priority, List<JobRequest.Item> items, boolean useGerman) {
+      this.id = id;
+      this.priority = priority;
+      this.items = items;
+      this.useGerman = useGerman;
+      this.file = directory.resolve(FILE_PREFIX + id + FILE_SUFFIX);
+    }
+
+
+    //----
+    synchronized void open() throws IOException {
+      zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+    }
+
+
+    //---- Binds, validates and renders one item outside the job's monitor, then writes it
+    void render(int index) throws InterruptedException {
+      if (isFinished()) // Failed or deleted
+        return;
+      final JobRequest.Item item = items.get(index);
+      final RenderTrace trace = new RenderTrace();
+      trace.mark();
+      try {
+        final boolean is1D = item != null && item.barcode1d() != null;
+        if (item == null || is1D == (item.barcode2d() != null))
+          throw RenderException.badRequest("Either barcode1d or barcode2d is required");
+        BarcodeRequest r = is1D
+            ? requestMapper.bind(BarcodeRequest1D.class, item.barcode1d(), "Invalid field value")
+            : requestMapper.bind(BarcodeRequest2D.class, item.barcode2d(), "Invalid field value");
+        trace.end(RenderTrace.Stage.BIND);
+        byte[] data = renderService.renderBackground(r, useGerman, trace);
+        completed(index, String.format("%05d-%s", index + 1, r.getFileName()), data, 200, null);
+      } catch (RenderException e) { // HTTP 400 or 422
+        completed(index, null, null, e.status.value(), e.getMessage());
+      } catch (RuntimeException e) { // Unexpected - the worker must go on with other items
+        completed(index, null, null, 500, "Internal error");
+      }
+    }
+
+
+    //---- Writes the item (or records its failure) and concludes the ZIP file after the last one
+    private synchronized void completed(int index, String fileName, byte[] data, int status,
+        String message) {
+      if (zip == null)
+        return;
+      state = State.RUNNING;
+      try {
+        if (data != null) {
+          zip.putNextEntry(new ZipEntry(fileName));
+          zip.write(data);
+          zip.closeEntry();
+          succeeded++;
+        } else {
+          failures.add(index + 1, status, message);
+        }
+        if (++completed == items.size()) {
+          Map<String,Object> manifest = new LinkedHashMap<>();
+          manifest.put("items", items.size());
+          manifest.put("succeeded", succeeded);
+          manifest.put("failedCount", failures.getCount());
+          manifest.put("failed", failures.getListed());
+          zip.putNextEntry(new ZipEntry("manifest.json"));
+          zip.write(objectMapper.writeValueAsBytes(manifest));
+          zip.closeEntry();
+          zip.close();
+          zip = null;
+          state = State.DONE;
+          finishedAt = System.nanoTime();
+        }
+      } catch (IOException e) { // E.g. disk full
+        error = "Result could not be stored";
+        state = State.FAILED;
+        finishedAt = System.nanoTime();
+        closeAndDelete();
+      }
+    }
+
+
+    //----
+    synchronized void cancel() {
+      if (!isFinished()) {
+        state = State.FAILED;
+        error = "Deleted";
+        finishedAt = System.nanoTime();
+      }
+      closeAndDelete();
+    }
+
+
+    //----
+    private void closeAndDelete() {
+      try {
+        if (zip != null)
+          zip.close();
+      } catch (IOException e) { // Deleted anyway
+      }
+      zip = null;
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) { // Deleted at the next startup
+      }
+    }
+
+
+    //----
+    synchronized boolean isFinished() {
+      return state == State.DONE || state == State.FAILED;
+    }
+
+
+    //----
+    synchronized boolean isExpired(long now) {
+      return isFinished() && now - finishedAt > retentionNanos;
+    }
+
+
+    //----
+    synchronized Status getStatus() {
+      return new Status(id, priority, state, items.size(), completed, succeeded,
+          failures.getCount(), error);
+    }
+  }
+
+}
@@ -0,0 +1,60 @@
+package de.vwsoft.barcodelib4jservice;
+
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+
+// Dry runs of /create1d and /create2d: the request body is the same and it is validated the same
+// way, but instead of the output file the response is a BarcodeLayout with the symbol geometry.
+// Nothing is drawn into a BarExporter or encoded; 2D symbols come from the same symbol cache as
+// rendering uses, so a layout request followed by the actual render builds the symbol only once.
+//
+// This controller instance is managed as a singleton by Spring. Only one instance exists for the
+// entire application lifecycle and it is reused across all HTTP requests. Therefore, any instance
+// fields (if present) would be shared across threads and must be thread-safe.
+@RestController
+public class LayoutController {
+  private final BarcodeRenderer renderer;
+
+
+  //----
+  public LayoutController(BarcodeRenderer renderer) {
+    this.renderer = renderer;
+  }
+
+
+  //----
+  @PostMapping("/layout1d")
+  public ResponseEntity<BarcodeLayout> layout1D(@Valid @RequestBody BarcodeRequest1D r,
+      @RequestHeader(value = "Accept-Language", defaultValue = "en") String language) {
+    return createLayoutResponse(r, language);
+  }
+
+
+  //----
+  @PostMapping("/layout2d")
+  public ResponseEntity<BarcodeLayout> layout2D(@Valid @RequestBody BarcodeRequest2D r,
+      @RequestHeader(value = "Accept-Language", defaultValue = "en") String language) {
+    return createLayoutResponse(r, language);
+  }
+
+
+  //----
+  private ResponseEntity<BarcodeLayout> createLayoutResponse(BarcodeRequest r, String language) {
+    try {
+      return ResponseEntity.ok(renderer.layout(r, language.startsWith("de"))); // HTTP 200
+    } catch (RenderException e) { // HTTP 400 or 422
+      return ResponseEntity.status(e.status)
+          .body(BarcodeLayout.error(r.getTypeName(), e.getMessage()));
+    } catch (IllegalStateException e) { // The symbol could not be measured
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(BarcodeLayout.error(r.getTypeName(), e.getMessage())); // HTTP 500
+    }
+  }
+
+}
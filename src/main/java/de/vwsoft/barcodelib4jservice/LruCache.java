@@ -0,0 +1,73 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+
+// A thread-safe, size-bounded cache with least-recently-used eviction. Each entry is weighed (for
+// example by its size in bytes) and entries are evicted once the total weight exceeds the capacity.
+// All operations are O(1) and guarded by the cache's monitor, which is held only very briefly.
+public class LruCache<K,V> {
+  private final LinkedHashMap<K,V> map = new LinkedHashMap<>(256, 0.75F, true); // Access order
+  private final ToLongFunction<V> weigher;
+  private final long capacity;
+  private long weight;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+
+  //----
+  public LruCache(long capacity, ToLongFunction<V> weigher) {
+    this.capacity = capacity;
+    this.weigher = weigher;
+  }
+
+
+  //---- Returns the cached value, or 'null' if there is none
+  public synchronized V get(K key) {
+    V value = map.get(key);
+    if (value != null)
+      hits++;
+    else
+      misses++;
+    return value;
+  }
+
+
+  //---- Adds or replaces an entry. Values that alone exceed the capacity are not cached.
+  public void put(K key, V value) {
+    final long valueWeight = weigher.applyAsLong(value);
+    if (valueWeight > capacity)
+      return;
+    synchronized (this) {
+      V previous = map.put(key, value);
+      weight += valueWeight - (previous != null ? weigher.applyAsLong(previous) : 0L);
+      Iterator<Map.Entry<K,V>> it = map.entrySet().iterator();
+      while (weight > capacity && it.hasNext()) {
+        Map.Entry<K,V> eldest = it.next();
+        weight -= weigher.applyAsLong(eldest.getValue());
+        it.remove();
+        evictions++;
+      }
+    }
+  }
+
+
+  //----
+  public boolean isEnabled() {
+    return capacity > 0;
+  }
+
+
+  //----
+  public synchronized Stats getStats() {
+    return new Stats(map.size(), weight, capacity, hits, misses, evictions);
+  }
+
+  public record Stats(int entries, long weight, long capacity, long hits, long misses,
+      long evictions) {}
+
+}
@@ -1,12 +1,21 @@
 package de.vwsoft.barcodelib4jservice;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.LivenessState;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.PathVariable;
 
@@ -18,11 +27,59 @@ import de.vwsoft.barcodelib4j.twod.TwoDType;
 // This controller instance is managed as a singleton by Spring. Only one instance exists for the
 // entire application lifecycle and it is reused across all HTTP requests. Therefore, any instance
 // fields (if present) would be shared across threads and must be thread-safe.
+//
+// The enum lists never change while the application runs, so they are serialized once at
+// construction and answered with an ETag (see PrecomputedJson). Their properties are kept in
+// insertion order, so that the body and the ETag are equal on every instance and after restarts.
 @RestController
 public class MetadataController {
 
+  private final ApplicationAvailability availability;
+  private final Map<String, PrecomputedJson> enumInfos;
+  private final PrecomputedJson emptyList;
+
+
   //----
-  public MetadataController() {
+  public MetadataController(ApplicationAvailability availability, ObjectMapper objectMapper) {
+    this.availability = availability;
+    this.enumInfos = buildEnumInfos(objectMapper);
+    this.emptyList = PrecomputedJson.of(objectMapper, List.of());
+  }
+
+
+  //----
+  static Map<String, PrecomputedJson> buildEnumInfos(ObjectMapper objectMapper) {
+    return Map.of(
+        "types-1d", PrecomputedJson.of(objectMapper, enumInfoFrom(BarcodeType.values(), t -> props(
+            "typeName", t.getTypeName(),
+            "typeNameShort", t.getTypeNameShort(),
+            "supportsCustomText", t.supportsCustomText(),
+            "supportsAddOn", t.supportsAddOn(),
+            "supportsTextOnTop", t.supportsTextOnTop(),
+            "supportsRatio", t.supportsRatio(),
+            "supportsAutoCompletion", t.supportsAutoCompletion(),
+            "supportsOptionalChecksum", t.supportsOptionalChecksum()
+        ))),
+        "types-2d", PrecomputedJson.of(objectMapper, enumInfoFrom(TwoDType.values(), t -> props(
+            "typeName", t.getTypeName(),
+            "isGS1", t.isGS1(),
+            "defaultQuietZone", t.getDefaultQuietZone()
+        ))),
+        "formats", PrecomputedJson.of(objectMapper, enumInfoFrom(ImageFormat.values(), f -> props(
+            "isRaster", f.isRasterFormat(),
+            "supportsTransparency", f.supportsTransparency(),
+            "supportsCMYK", f.supportsCMYK()
+        ))));
+  }
+
+
+  //---- A property map that iterates in the given order (Map.of with more than two entries
+  //     iterates in an order that differs from one JVM to the next)
+  private static Map<String, Object> props(Object... namesAndValues) {
+    Map<String, Object> properties = new LinkedHashMap<>();
+    for (int i=0; i<namesAndValues.length; i+=2)
+      properties.put((String)namesAndValues[i], namesAndValues[i + 1]);
+    return properties;
   }
 
 
@@ -36,39 +93,32 @@ public class MetadataController {
 
   //----
   @GetMapping("/{path}")
-  public ResponseEntity<List<EnumInfo>> getEnumInfo(@PathVariable String path) {
-    List<EnumInfo> result = switch(path) {
-      case "types-1d" -> enumInfoFrom(BarcodeType.values(), t -> Map.of(
-          "typeName", t.getTypeName(),
-          "typeNameShort", t.getTypeNameShort(),
-          "supportsCustomText", t.supportsCustomText(),
-          "supportsAddOn", t.supportsAddOn(),
-          "supportsTextOnTop", t.supportsTextOnTop(),
-          "supportsRatio", t.supportsRatio(),
-          "supportsAutoCompletion", t.supportsAutoCompletion(),
-          "supportsOptionalChecksum", t.supportsOptionalChecksum()
-      ));
-      case "types-2d" -> enumInfoFrom(TwoDType.values(), t -> Map.of(
-          "typeName", t.getTypeName(),
-          "isGS1", t.isGS1(),
-          "defaultQuietZone", t.getDefaultQuietZone()
-      ));
-      case "formats" -> enumInfoFrom(ImageFormat.values(), f -> Map.of(
-          "isRaster", f.isRasterFormat(),
-          "supportsTransparency", f.supportsTransparency(),
-          "supportsCMYK", f.supportsCMYK()
-      ));
-      default -> List.of();
-    };
-
-    return ResponseEntity.ok(result);
+  public ResponseEntity<byte[]> getEnumInfo(@PathVariable String path,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    return enumInfos.getOrDefault(path, emptyList).toResponse(ifNoneMatch);
   }
 
 
-  //----
+  //---- Readiness probe: HTTP 200 once the application accepts traffic, i.e. after the warm-up
+  //     (see WarmUp), otherwise HTTP 503
   @GetMapping("/health")
   public ResponseEntity<Map<String, String>> health() {
-    return ResponseEntity.ok(Map.of("status", "UP"));
+    return probe(availability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC);
+  }
+
+
+  //---- Liveness probe: HTTP 200 unless the application context reports a broken state
+  @GetMapping("/health/live")
+  public ResponseEntity<Map<String, String>> liveness() {
+    return probe(availability.getLivenessState() == LivenessState.CORRECT);
+  }
+
+
+  //----
+  private static ResponseEntity<Map<String, String>> probe(boolean up) {
+    return ResponseEntity.status(up ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+        .cacheControl(CacheControl.noStore())
+        .body(Map.of("status", up ? "UP" : "OUT_OF_SERVICE"));
   }
 
 }
@@ -0,0 +1,17 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+
+
+// An output file that is written straight from the geometry of a symbol, bypassing BarExporter:
+// ModuleRaster for PNG and BMP, ModuleSvg for compact SVG. Implementations are immutable and may be
+// written any number of times, also concurrently.
+interface ModuleImage {
+
+  //----
+  void write(OutputStream out, ImageFormat format) throws IOException;
+
+}
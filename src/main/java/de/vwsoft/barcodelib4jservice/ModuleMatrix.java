@@ -0,0 +1,294 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+import de.vwsoft.barcodelib4j.oned.Barcode;
+import de.vwsoft.barcodelib4j.twod.TwoDSymbol;
+
+
+// The module grid of a 2D symbol (without quiet zone), or the bars of a 1D barcode as a single row
+// of narrow modules. Barcode-Lib4J exposes symbols only through their draw methods, so the grid is
+// recovered by drawing the symbol once onto a 1-bit probe image with a dot size of one pixel: the
+// library snaps modules to whole dots, so every module covers the same integral number of pixels.
+// The narrowest run of equal pixels in x and y direction is then the module width and height.
+// Symbols whose runs are not multiples of it are rejected rather than guessed.
+//
+// The dark pixels need not reach the border of the symbol: the last row and column of a Micro QR
+// Code, or the outer layer of an Aztec Code, may be all light. So for square modules, the dark area
+// only gives the smallest possible grid. The symbol is then drawn into rectangles of exactly
+// FIT_PITCH pixels per module of a candidate grid (plus quiet zone), from the smallest one upwards.
+// Barcode-Lib4J fits the symbol into the rectangle with the largest whole module size, so that size
+// equals FIT_PITCH for the true grid only; any smaller grid gives a smaller module size. The bounds
+// of the symbol are then those of the rectangle, and no border module is lost. Stacked codes like
+// PDF417 (modules not square) start and stop every row with a dark pattern and are taken as drawn.
+//
+// Wide bars of 1D barcodes need not be whole multiples of the narrow one, so for vector output
+// 'barEdges' returns the bar positions of a drawing without dot size instead. They are read from
+// pixels too, so they are quantized to 1/262142 of the width: less than the default SVG precision
+// of 1 micrometer for barcodes up to 262 mm wide.
+//
+// Instances are immutable and therefore thread-safe.
+final class ModuleMatrix {
+  private static final int PROBE_SIZE_2D = 1024;   // > largest 2D symbol (PDF417: 583 modules)
+  private static final int PROBE_WIDTH_1D = 16384;  // Multiples of 8: no padding bits per row
+  private static final int PROBE_HEIGHT_1D = 8;
+  private static final int PROBE_WIDTH_EDGES = 1 << 18;
+  private static final int PROBE_HEIGHT_EDGES = 2;  // The top and the bottom row
+  private static final int FIT_PITCH = 4;           // Pixels per module when fitting the grid
+  private static final int MAX_LIGHT_BORDER = 4;    // Light border modules per axis, at most
+
+  final int columns;
+  final int rows;
+  final double rowHeight; // In module widths: 1.0 for matrix codes, bar height for 1D barcodes
+  private final long[] bits;
+
+
+  //----
+  private ModuleMatrix(int columns, int rows, double rowHeight, long[] bits) {
+    this.columns = columns;
+    this.rows = rows;
+    this.rowHeight = rowHeight;
+    this.bits = bits;
+  }
+
+
+  //----
+  boolean isDark(int column, int row) {
+    int i = row * columns + column;
+    return (bits[i >>> 6] & (1L << i)) != 0L;
+  }
+
+
+  //---- 'quietZone' is the one the symbol was built with, in modules. Throws IllegalStateException
+  //     if the symbol is not drawn on a regular module grid.
+  static ModuleMatrix of(TwoDSymbol symbol, int quietZone) {
+    Probe probe = Probe.of(symbol, PROBE_SIZE_2D - 2, PROBE_SIZE_2D - 2);
+    Probe.Area dark = probe.measure(true);
+    final int columns = (dark.x1() - dark.x0()) / dark.moduleWidth();
+    final int rows = (dark.y1() - dark.y0()) / dark.moduleHeight();
+    if (dark.moduleWidth() != dark.moduleHeight())
+      return probe.sample(dark.x0(), dark.y0(), dark.x1(), columns, rows, dark.moduleWidth(),
+                          dark.moduleHeight());
+
+    // Candidate grids in the order of their number of light border modules
+    for (int added=0; added<=2*MAX_LIGHT_BORDER; added++) {
+      for (int x=Math.min(added, MAX_LIGHT_BORDER); x>=0 && added-x<=MAX_LIGHT_BORDER; x--) {
+        ModuleMatrix matrix = fit(symbol, quietZone, columns + x, rows + added - x);
+        if (matrix != null)
+          return matrix;
+      }
+    }
+    throw new IllegalStateException("Symbol does not fit a regular module grid");
+  }
+
+
+  //---- Draws the symbol into a rectangle of 'columns' x 'rows' modules plus quiet zone, FIT_PITCH
+  //     pixels each. Returns the matrix if the symbol is drawn with that module size, i.e. fills
+  //     the rectangle exactly, otherwise null.
+  private static ModuleMatrix fit(TwoDSymbol symbol, int quietZone, int columns, int rows) {
+    final Probe probe = Probe.of(symbol, (columns + 2 * quietZone) * FIT_PITCH,
+                                         (rows + 2 * quietZone) * FIT_PITCH);
+    final Probe.Area dark;
+    try {
+      dark = probe.measure(true);
+    } catch (IllegalStateException e) { // Too small to draw the symbol at all
+      return null;
+    }
+    if (dark.moduleWidth() != FIT_PITCH || dark.moduleHeight() != FIT_PITCH)
+      return null;
+    final int origin = 1 + quietZone * FIT_PITCH;
+    return probe.sample(origin, origin, origin + columns * FIT_PITCH, columns, rows, FIT_PITCH,
+                        FIT_PITCH);
+  }
+
+
+  //---- The barcode is drawn without text. Throws IllegalStateException if the bars are not
+  //     multiples of the narrowest one or there are too many to resolve.
+  static ModuleMatrix of(Barcode barcode) {
+    Probe probe = new Probe(PROBE_WIDTH_1D, PROBE_HEIGHT_1D);
+    barcode.setTextVisible(false);
+    barcode.draw(probe.g2d, 1.0, 0.0, PROBE_WIDTH_1D - 2, PROBE_HEIGHT_1D, 1.0, 0.0, 0.0);
+    Probe.Area dark = probe.measure(false);
+    if (dark.moduleWidth() == 1)
+      throw new IllegalStateException("Barcode too wide to resolve its modules");
+    // Bars may be wider than one module (e.g. the wide bars of Code 39), so the number of modules
+    // is rounded from the narrowest bar or space instead of checked
+    final int columns = (int)Math.round((dark.x1() - dark.x0()) / (double)dark.moduleWidth());
+    return probe.sample(dark.x0(), dark.y0(), dark.x1(), columns, 1, dark.moduleWidth(),
+                        dark.moduleHeight());
+  }
+
+
+  //---- The left and right edges of the bars (text invisible) drawn without dot size, as fractions
+  //     of the drawing width: bar i covers [edges[2i], edges[2i+1]). Throws IllegalStateException
+  //     if the bars are not all of the full drawing height.
+  static double[] barEdges(Barcode barcode) {
+    Probe probe = new Probe(PROBE_WIDTH_EDGES, PROBE_HEIGHT_EDGES);
+    barcode.setTextVisible(false);
+    barcode.draw(probe.g2d, 1.0, 0.0, PROBE_WIDTH_EDGES - 2, PROBE_HEIGHT_EDGES, 0.0, 0.0, 0.0);
+    return probe.toEdges();
+  }
+
+
+  //---- A 1-bit image the symbol is drawn onto (black on white)
+  private static final class Probe {
+    final int width;
+    final int height;
+    final Graphics2D g2d;
+    private final byte[] data;
+    private final int stride;
+
+
+    //----
+    Probe(int width, int height) {
+      this.width = width;
+      this.height = height;
+      BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+      data = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+      stride = (width + 7) >> 3;
+      g2d = image.createGraphics();
+      g2d.setColor(Color.WHITE);
+      g2d.fillRect(0, 0, width, height);
+      g2d.setColor(Color.BLACK);
+    }
+
+
+    //---- The symbol drawn into a rectangle of the given size in pixels, with a white border of
+    //     at least one pixel. The image width is a multiple of 8: no padding bits per row.
+    static Probe of(TwoDSymbol symbol, int width, int height) {
+      Probe probe = new Probe((width + 2 + 7) & ~7, height + 2);
+      symbol.draw(probe.g2d, 1.0, 1.0, width, height, 1.0);
+      return probe;
+    }
+
+
+    //---- Index 0 of the default palette of TYPE_BYTE_BINARY is black
+    boolean isDark(int x, int y) {
+      return (data[y * stride + (x >> 3)] & (0x80 >> (x & 7))) == 0;
+    }
+
+
+    //---- The bounds of the dark pixels, [x0, x1) x [y0, y1), and the narrowest runs of equal
+    //     pixels. 'grid' = false reads the bottom row only, where all bars of a 1D barcode are
+    //     present; the module height is then 1 and the module width is not checked. Throws
+    //     IllegalStateException if there are no dark pixels or 'grid' is true and the runs are not
+    //     multiples of the narrowest one.
+    Area measure(boolean grid) {
+      g2d.dispose();
+
+      // Columns where the color changes in any row, rows that differ from the previous row.
+      // Bit x of 'xEdges' is set if pixel x differs from pixel x - 1. The symbol is drawn with a
+      // white border, so the first and last edges enclose it.
+      final byte[] xEdges = new byte[stride];
+      final boolean[] yEdges = new boolean[height + 1];
+      int y0 = -1, y1 = -1;
+      for (int y=grid ? 0 : height-1; y<height; y++) {
+        final int offset = y * stride;
+        int carry = 1;
+        boolean hasDark = false;
+        for (int i=0; i<stride; i++) {
+          int b = data[offset + i] & 0xFF;
+          xEdges[i] |= (byte)(b ^ ((b >>> 1) | (carry << 7)));
+          carry = b & 1;
+          hasDark |= b != 0xFF;
+        }
+        if (hasDark) {
+          if (y0 < 0)
+            y0 = y;
+          y1 = y;
+        }
+        yEdges[y] = y > 0 && grid && Arrays.compare(data, offset - stride, offset, data, offset,
+                                                    offset + stride) != 0;
+      }
+      if (y0 < 0)
+        throw new IllegalStateException("Symbol has no dark modules");
+      yEdges[y1 + 1] = true;
+
+      int x0 = -1, x1 = -1, moduleWidth = Integer.MAX_VALUE, gcdWidth = 0;
+      for (int x=0; x<width; x++) {
+        if ((xEdges[x >> 3] & (0x80 >> (x & 7))) == 0)
+          continue;
+        if (x0 < 0) {
+          x0 = x;
+        } else {
+          moduleWidth = Math.min(moduleWidth, x - x1);
+          gcdWidth = gcd(gcdWidth, x - x1);
+        }
+        x1 = x; // The last edge is one past the last dark pixel
+      }
+      int moduleHeight = grid ? Integer.MAX_VALUE : y1 - y0 + 1, gcdHeight = 0;
+      for (int y=y0, last=y0; y<=y1+1 && grid; y++) {
+        if (yEdges[y] && y > y0) {
+          moduleHeight = Math.min(moduleHeight, y - last);
+          gcdHeight = gcd(gcdHeight, y - last);
+          last = y;
+        }
+      }
+      if (grid && (moduleWidth != gcdWidth || moduleHeight != gcdHeight))
+        throw new IllegalStateException("Symbol is not drawn on a regular module grid");
+      return new Area(x0, y0, x1, y1 + 1, moduleWidth, moduleHeight);
+    }
+
+
+    //---- Reads the grid of 'columns' x 'rows' modules that spans [x0, x1) horizontally and starts
+    //     at 'y0', from the pixel in the middle of each module
+    ModuleMatrix sample(int x0, int y0, int x1, int columns, int rows, int moduleWidth,
+        int moduleHeight) {
+      long[] bits = new long[(columns * rows + 63) >>> 6];
+      for (int row=0; row<rows; row++) {
+        int y = y0 + row * moduleHeight + moduleHeight / 2;
+        for (int column=0; column<columns; column++) {
+          int x = x0 + (int)((column + 0.5) * (x1 - x0) / columns);
+          if (isDark(x, y)) {
+            int i = row * columns + column;
+            bits[i >>> 6] |= 1L << i;
+          }
+        }
+      }
+      return new ModuleMatrix(columns, rows, (double)moduleHeight / moduleWidth, bits);
+    }
+
+
+    //----
+    double[] toEdges() {
+      g2d.dispose();
+      final int last = (height - 1) * stride;
+      if (Arrays.compare(data, 0, stride, data, last, last + stride) != 0)
+        throw new IllegalStateException("Bars are not of equal height");
+
+      double[] edges = new double[64];
+      int count = 0;
+      boolean dark = false;
+      for (int x=0; x<width; x++) {
+        if ((x & 7) == 0 && data[x >> 3] == (dark ? 0 : (byte)0xFF)) { // 8 pixels, no edge
+          x += 7;
+          continue;
+        }
+        if (isDark(x, 0) == dark)
+          continue;
+        if (count == edges.length)
+          edges = Arrays.copyOf(edges, 2 * count);
+        edges[count++] = (x - 1) / (double)(width - 2);
+        dark = !dark;
+      }
+      if (count == 0)
+        throw new IllegalStateException("Symbol has no dark modules");
+      return Arrays.copyOf(edges, count); // The border is white, so 'count' is even
+    }
+
+
+    //----
+    private static int gcd(int a, int b) {
+      return b == 0 ? a : gcd(b, a % b);
+    }
+
+
+    //----
+    record Area(int x0, int y0, int x1, int y1, int moduleWidth, int moduleHeight) {}
+  }
+
+}
@@ -0,0 +1,286 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import de.vwsoft.barcodelib4j.image.ImageColorModel;
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+import de.vwsoft.barcodelib4j.image.ImageTransform;
+
+
+// Fast path for PNG and BMP output of 2D symbols with square modules: instead of drawing the symbol
+// through Graphics2D into an RGB image and encoding that with ImageIO, the module matrix is written
+// scanline by scanline as a 1-bit paletted image (background = index 0, foreground = index 1).
+// Modules are snapped to whole pixels and the symbol including its quiet zone is centered within
+// the requested width and height, like Barcode-Lib4J does when drawing with a dot size.
+//
+// Only used for requests that this can represent exactly: RGB, opaque, not rotated or mirrored.
+final class ModuleRaster implements ModuleImage {
+  private static final byte[] PNG_SIGNATURE = { (byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+  private static final int IDAT_SIZE = 32768;
+
+  private final ModuleMatrix matrix;
+  private final int width;      // Image size in pixels
+  private final int height;
+  private final int left;       // Position of module (0,0) in pixels
+  private final int top;
+  private final int moduleSize; // In pixels
+  private final int dpi;
+  private final int foreground; // 0xRRGGBB
+  private final int background;
+
+
+  //----
+  private ModuleRaster(ModuleMatrix matrix, int width, int height, int left, int top,
+      int moduleSize, int dpi, int foreground, int background) {
+    this.matrix = matrix;
+    this.width = width;
+    this.height = height;
+    this.left = left;
+    this.top = top;
+    this.moduleSize = moduleSize;
+    this.dpi = dpi;
+    this.foreground = foreground;
+    this.background = background;
+  }
+
+
+  //---- Returns null if the request cannot be written by this fast path. Expects a validated
+  //     request (raster formats always have a DPI).
+  static ModuleRaster create(BarcodeRequest2D r, ModuleMatrix matrix) {
+    if ((r.format != ImageFormat.PNG && r.format != ImageFormat.BMP)
+        || r.colorModel != ImageColorModel.RGB || !r.opaque
+        || r.transform != ImageTransform.ROTATE_0 || matrix.rowHeight != 1.0)
+      return null;
+
+    final double pixelsPerMM = r.dpi / 25.4;
+    final int width = (int)Math.round((r.marginLeft + r.width + r.marginRight) * pixelsPerMM);
+    final int height = (int)Math.round((r.marginTop + r.height + r.marginBottom) * pixelsPerMM);
+    final int areaX = (int)Math.round(r.marginLeft * pixelsPerMM);
+    final int areaY = (int)Math.round(r.marginTop * pixelsPerMM);
+    final int areaWidth = (int)Math.round((r.marginLeft + r.width) * pixelsPerMM) - areaX;
+    final int areaHeight = (int)Math.round((r.marginTop + r.height) * pixelsPerMM) - areaY;
+
+    final int columns = matrix.columns + 2 * r.quietZone;
+    final int rows = matrix.rows + 2 * r.quietZone;
+    final int moduleSize = Math.min(areaWidth / columns, areaHeight / rows);
+    if (moduleSize < 1) // Less than a pixel per module - left to Barcode-Lib4J
+      return null;
+
+    return new ModuleRaster(matrix, width, height,
+        areaX + (areaWidth - columns * moduleSize) / 2 + r.quietZone * moduleSize,
+        areaY + (areaHeight - rows * moduleSize) / 2 + r.quietZone * moduleSize,
+        moduleSize, r.dpi, toRGB(r.foreground), toRGB(r.background));
+  }
+
+
+  //----
+  private static int toRGB(List<Integer> c) {
+    return c.get(0) << 16 | c.get(1) << 8 | c.get(2);
+  }
+
+
+  //----
+  @Override
+  public void write(OutputStream out, ImageFormat format) throws IOException {
+    if (format == ImageFormat.PNG)
+      writePNG(out);
+    else
+      writeBMP(out);
+  }
+
+
+  //---- Sets the bits of pixel row 'y' in 'line' (from 'offset' on), which must be all zero
+  private void fillRow(byte[] line, int offset, int y) {
+    final int row = Math.floorDiv(y - top, moduleSize);
+    if (y < top || row >= matrix.rows)
+      return;
+    for (int column=0; column<matrix.columns; column++) {
+      if (!matrix.isDark(column, row))
+        continue;
+      final int x0 = left + column * moduleSize;
+      for (int x=x0; x<x0+moduleSize; x++)
+        line[offset + (x >> 3)] |= (byte)(0x80 >>> (x & 7));
+    }
+  }
+
+
+  //----
+  private void writePNG(OutputStream out) throws IOException {
+    out.write(PNG_SIGNATURE);
+
+    byte[] ihdr = new byte[13];
+    putInt(ihdr, 0, width);
+    putInt(ihdr, 4, height);
+    ihdr[8] = 1; // Bit depth
+    ihdr[9] = 3; // Color type: palette; compression, filter and interlace method 0
+    writeChunk(out, "IHDR", ihdr, ihdr.length);
+
+    byte[] plte = { (byte)(background >> 16), (byte)(background >> 8), (byte)background,
+                    (byte)(foreground >> 16), (byte)(foreground >> 8), (byte)foreground };
+    writeChunk(out, "PLTE", plte, plte.length);
+
+    byte[] phys = new byte[9];
+    final int pixelsPerMeter = (int)Math.round(dpi / 0.0254);
+    putInt(phys, 0, pixelsPerMeter);
+    putInt(phys, 4, pixelsPerMeter);
+    phys[8] = 1; // Unit: meter
+    writeChunk(out, "pHYs", phys, phys.length);
+
+    // Scanlines: filter type 0 plus the pixel bits. Pixel rows of one module row are identical.
+    final byte[] line = new byte[1 + ((width + 7) >> 3)];
+    final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    try (IdatOutputStream idat = new IdatOutputStream(out);
+         DeflaterOutputStream zlib = new DeflaterOutputStream(idat, deflater, IDAT_SIZE)) {
+      int filledRow = Integer.MIN_VALUE;
+      for (int y=0; y<height; y++) {
+        int row = Math.floorDiv(y - top, moduleSize);
+        if (row != filledRow) {
+          Arrays.fill(line, (byte)0);
+          fillRow(line, 1, y);
+          filledRow = row;
+        }
+        zlib.write(line);
+      }
+    } finally {
+      deflater.end();
+    }
+
+    writeChunk(out, "IEND", line, 0);
+  }
+
+
+  //---- BITMAPFILEHEADER, BITMAPINFOHEADER, 2 palette entries and bottom-up rows padded to 4 bytes
+  private void writeBMP(OutputStream out) throws IOException {
+    final int stride = ((width + 31) >> 5) << 2;
+    final int headerSize = 14 + 40 + 8;
+    final int pixelsPerMeter = (int)Math.round(dpi / 0.0254);
+
+    byte[] header = new byte[headerSize];
+    header[0] = 'B';
+    header[1] = 'M';
+    putIntLE(header, 2, headerSize + stride * height);
+    putIntLE(header, 10, headerSize);
+    putIntLE(header, 14, 40);
+    putIntLE(header, 18, width);
+    putIntLE(header, 22, height);
+    header[26] = 1; // Planes
+    header[28] = 1; // Bits per pixel; compression 0 = BI_RGB
+    putIntLE(header, 34, stride * height);
+    putIntLE(header, 38, pixelsPerMeter);
+    putIntLE(header, 42, pixelsPerMeter);
+    putIntLE(header, 46, 2); // Colors used
+    putIntLE(header, 50, 2); // Important colors
+    putIntLE(header, 54, background); // Palette entries are B, G, R, 0 in little-endian order
+    putIntLE(header, 58, foreground);
+    out.write(header);
+
+    final byte[] line = new byte[stride];
+    int filledRow = Integer.MIN_VALUE;
+    for (int y=height-1; y>=0; y--) {
+      int row = Math.floorDiv(y - top, moduleSize);
+      if (row != filledRow) {
+        Arrays.fill(line, (byte)0);
+        fillRow(line, 0, y);
+        filledRow = row;
+      }
+      out.write(line);
+    }
+  }
+
+
+  //----
+  private static void writeChunk(OutputStream out, String type, byte[] data, int length)
+      throws IOException {
+    byte[] header = new byte[8];
+    putInt(header, 0, length);
+    for (int i=0; i<4; i++)
+      header[4 + i] = (byte)type.charAt(i);
+    CRC32 crc = new CRC32();
+    crc.update(header, 4, 4);
+    crc.update(data, 0, length);
+    byte[] trailer = new byte[4];
+    putInt(trailer, 0, (int)crc.getValue());
+    out.write(header);
+    out.write(data, 0, length);
+    out.write(trailer);
+  }
+
+
+  //----
+  private static void putInt(byte[] b, int offset, int value) {
+    b[offset] = (byte)(value >>> 24);
+    b[offset + 1] = (byte)(value >>> 16);
+    b[offset + 2] = (byte)(value >>> 8);
+    b[offset + 3] = (byte)value;
+  }
+
+
+  //----
+  private static void putIntLE(byte[] b, int offset, int value) {
+    b[offset] = (byte)value;
+    b[offset + 1] = (byte)(value >>> 8);
+    b[offset + 2] = (byte)(value >>> 16);
+    b[offset + 3] = (byte)(value >>> 24);
+  }
+
+
+  //---- Collects the zlib stream into IDAT chunks of up to IDAT_SIZE bytes. Closing it writes the
+  //     last chunk, but does not close the underlying stream.
+  private static final class IdatOutputStream extends OutputStream {
+    private final OutputStream out;
+    private final byte[] buffer = new byte[IDAT_SIZE];
+    private int count;
+
+
+    //----
+    IdatOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+
+    //----
+    @Override
+    public void write(int b) throws IOException {
+      if (count == buffer.length)
+        flushChunk();
+      buffer[count++] = (byte)b;
+    }
+
+
+    //----
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+      while (length > 0) {
+        if (count == buffer.length)
+          flushChunk();
+        int n = Math.min(length, buffer.length - count);
+        System.arraycopy(b, offset, buffer, count, n);
+        count += n;
+        offset += n;
+        length -= n;
+      }
+    }
+
+
+    //----
+    @Override
+    public void close() throws IOException {
+      if (count > 0)
+        flushChunk();
+    }
+
+
+    //----
+    private void flushChunk() throws IOException {
+      writeChunk(out, "IDAT", buffer, count);
+      count = 0;
+    }
+  }
+
+}
@@ -0,0 +1,258 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.List;
+
+import de.vwsoft.barcodelib4j.image.ImageColorModel;
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+import de.vwsoft.barcodelib4j.image.ImageTransform;
+
+
+// Compact SVG output ('formatCompactSVG'): all bars or dark modules become a single <path> of
+// rectangles, instead of one element per bar or module. For 2D symbols, each horizontal run of dark
+// modules is one rectangle, extended downwards as long as the rows below repeat the very same run.
+// Rectangles are written with relative commands ("m dx dy h w v h h -w z"); coordinates are in
+// millimeters, rounded to 'precision' decimal places without trailing zeros. Each rectangle is
+// positioned from the rounded absolute coordinates of the previous one, so that rounding errors do
+// not add up across the symbol.
+//
+// The geometry follows Barcode-Lib4J: 2D modules are square, snapped to whole dots if a DPI is set,
+// and the symbol including its quiet zone is centered. 1D bars come from ModuleMatrix#barEdges
+// (quantized to 1/262142 of the width) and therefore only vector output without dot size is
+// supported. Requests that this cannot represent (CMYK, rotated or mirrored, 1D barcodes with
+// text, stacked 2D codes like PDF417) are left to BarExporter. The document is built on creation.
+final class ModuleSvg implements ModuleImage {
+  private final byte[] document;
+
+
+  //----
+  private ModuleSvg(byte[] document) {
+    this.document = document;
+  }
+
+
+  //---- Whether the request asks for compact SVG and can be written by this class, so far as it
+  //     can be told without building the symbol
+  static boolean supports(BarcodeRequest r) {
+    return r.formatCompactSVG && r.colorModel == ImageColorModel.RGB
+        && r.transform == ImageTransform.ROTATE_0
+        && (!(r instanceof BarcodeRequest1D r1D) || (!r1D.textVisible && r.dpi == 0));
+  }
+
+
+  //---- Returns null if the symbol cannot be written by this class
+  static ModuleSvg create(BarcodeRequest2D r, ModuleMatrix matrix, int precision) {
+    if (!supports(r) || matrix.rowHeight != 1.0)
+      return null;
+
+    final int columns = matrix.columns + 2 * r.quietZone;
+    final int rows = matrix.rows + 2 * r.quietZone;
+    double moduleSize = Math.min(r.width / columns, r.height / rows);
+    if (r.dpi > 0) {
+      final double dotSize = 25.4 / r.dpi;
+      moduleSize = Math.floor(moduleSize / dotSize + 1e-9) * dotSize;
+      if (moduleSize == 0.0) // Less than a dot per module - left to Barcode-Lib4J
+        return null;
+    }
+    final double left = r.marginLeft + (r.width - columns * moduleSize) / 2
+        + r.quietZone * moduleSize;
+    final double top = r.marginTop + (r.height - rows * moduleSize) / 2
+        + r.quietZone * moduleSize;
+
+    // Run starts (index row * columns + column) already covered by the rectangle of a row above
+    final BitSet covered = new BitSet();
+    final PathBuilder path = new PathBuilder(precision);
+    for (int row=0; row<matrix.rows; row++) {
+      int column = 0;
+      while (column < matrix.columns) {
+        if (!matrix.isDark(column, row)) {
+          column++;
+          continue;
+        }
+        final int start = column;
+        while (column < matrix.columns && matrix.isDark(column, row))
+          column++;
+        if (covered.get(row * matrix.columns + start))
+          continue;
+        int height = 1;
+        while (row + height < matrix.rows && isRun(matrix, start, column, row + height)) {
+          covered.set((row + height) * matrix.columns + start);
+          height++;
+        }
+        path.rect(left + start * moduleSize, top + row * moduleSize,
+                  left + column * moduleSize, top + (row + height) * moduleSize);
+      }
+    }
+    return new ModuleSvg(toDocument(r, path, precision));
+  }
+
+
+  //---- 'edges' as returned by ModuleMatrix#barEdges. Returns null if the request is not supported.
+  static ModuleSvg create(BarcodeRequest1D r, double[] edges, int precision) {
+    if (!supports(r))
+      return null;
+    final PathBuilder path = new PathBuilder(precision);
+    for (int i=0; i<edges.length; i+=2) {
+      path.rect(r.marginLeft + edges[i] * r.width, r.marginTop,
+                r.marginLeft + edges[i + 1] * r.width, r.marginTop + r.height);
+    }
+    return new ModuleSvg(toDocument(r, path, precision));
+  }
+
+
+  //---- The format is always SVG
+  @Override
+  public void write(OutputStream out, ImageFormat format) throws IOException {
+    out.write(document);
+  }
+
+
+  //---- Whether the modules [start, end) of 'row' are dark and bounded by light modules or the edge
+  private static boolean isRun(ModuleMatrix matrix, int start, int end, int row) {
+    if ((start > 0 && matrix.isDark(start - 1, row))
+        || (end < matrix.columns && matrix.isDark(end, row)))
+      return false;
+    for (int column=start; column<end; column++) {
+      if (!matrix.isDark(column, row))
+        return false;
+    }
+    return true;
+  }
+
+
+  //---- Like BarExporter, inline SVG has neither an XML declaration nor a title
+  private static byte[] toDocument(BarcodeRequest r, PathBuilder path, int precision) {
+    final String width = format(r.marginLeft + r.width + r.marginRight, precision);
+    final String height = format(r.marginTop + r.height + r.marginBottom, precision);
+    StringBuilder sb = new StringBuilder(path.length() + 320);
+    if (!r.formatInlineSVG)
+      sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width)
+      .append("mm\" height=\"").append(height).append("mm\" viewBox=\"0 0 ").append(width)
+      .append(' ').append(height).append("\">\n");
+    if (!r.formatInlineSVG) {
+      sb.append("<title>").append(r.getTypeName().replace("&", "&amp;").replace("<", "&lt;"))
+        .append("</title>\n");
+    }
+    if (r.opaque) {
+      sb.append("<rect width=\"").append(width).append("\" height=\"").append(height)
+        .append("\" fill=\"").append(toHex(r.background)).append("\"/>\n");
+    }
+    sb.append("<path fill=\"").append(toHex(r.foreground)).append("\" d=\"");
+    path.appendTo(sb);
+    sb.append("\"/>\n</svg>\n");
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+
+  //----
+  private static String toHex(List<Integer> c) {
+    return String.format("#%02x%02x%02x", c.get(0), c.get(1), c.get(2));
+  }
+
+
+  //----
+  private static String format(double value, int precision) {
+    StringBuilder sb = new StringBuilder(16);
+    appendFixed(sb, Math.round(value * pow10(precision)), precision, false);
+    return sb.toString();
+  }
+
+
+  //---- Appends 'value' / 10^precision without trailing zeros, and without the leading zero of
+  //     values below 1 if 'compact' (allowed in path data: ".5", "-.5")
+  private static void appendFixed(StringBuilder sb, long value, int precision, boolean compact) {
+    if (value < 0) {
+      sb.append('-');
+      value = -value;
+    }
+    final long scale = pow10(precision);
+    final long integer = value / scale;
+    long fraction = value % scale;
+    if (integer != 0 || fraction == 0 || !compact)
+      sb.append(integer);
+    if (fraction != 0) {
+      int digits = precision;
+      while (fraction % 10 == 0) {
+        fraction /= 10;
+        digits--;
+      }
+      sb.append('.');
+      for (long f=fraction; digits > 1 && f < pow10(digits - 1); f*=10)
+        sb.append('0');
+      sb.append(fraction);
+    }
+  }
+
+
+  //----
+  private static long pow10(int n) {
+    long p = 1;
+    for (int i=0; i<n; i++)
+      p *= 10;
+    return p;
+  }
+
+
+  //---- Path data of rectangles in relative commands. Coordinates are kept as rounded integers in
+  //     units of 10^-precision mm, so the relative offsets are exact.
+  private static final class PathBuilder {
+    private final StringBuilder sb = new StringBuilder(1024);
+    private final int precision;
+    private final double scale;
+    private long x; // Start point of the previous rectangle, where 'z' returns to
+    private long y;
+
+
+    //----
+    PathBuilder(int precision) {
+      this.precision = precision;
+      this.scale = pow10(precision);
+    }
+
+
+    //---- Rectangles that vanish at the chosen precision are dropped
+    void rect(double x0, double y0, double x1, double y1) {
+      final long left = Math.round(x0 * scale), top = Math.round(y0 * scale);
+      final long right = Math.round(x1 * scale), bottom = Math.round(y1 * scale);
+      if (right == left || bottom == top)
+        return;
+      sb.append('m');
+      append(left - x, false);
+      append(top - y, true);
+      sb.append('h');
+      append(right - left, false);
+      sb.append('v');
+      append(bottom - top, false);
+      sb.append('h');
+      append(left - right, false);
+      sb.append('z');
+      x = left;
+      y = top;
+    }
+
+
+    //---- A number needs a separator after a preceding number, unless its sign separates it
+    private void append(long value, boolean afterNumber) {
+      if (afterNumber && value >= 0)
+        sb.append(' ');
+      appendFixed(sb, value, precision, true);
+    }
+
+
+    //----
+    int length() {
+      return sb.length();
+    }
+
+
+    //----
+    void appendTo(StringBuilder target) {
+      target.append(sb);
+    }
+  }
+
+}
@@ -0,0 +1,51 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+
+
+// A pool of reusable output buffers. Encoding into a buffer that has already grown to a typical
+// output size avoids the repeated growing (and copying) of a fresh ByteArrayOutputStream. Buffers
+// that have grown beyond 'maxRetainedBytes' are dropped on release instead of being kept alive.
+public class OutputBufferPool {
+  private final ArrayBlockingQueue<Buffer> pool;
+  private final int maxRetainedBytes;
+
+
+  //----
+  public OutputBufferPool(int size, int maxRetainedBytes) {
+    this.pool = new ArrayBlockingQueue<>(Math.max(1, size));
+    this.maxRetainedBytes = maxRetainedBytes;
+  }
+
+
+  //---- Returns an empty buffer. It should be released again after use.
+  public Buffer acquire() {
+    Buffer buffer = pool.poll();
+    return buffer != null ? buffer : new Buffer();
+  }
+
+
+  //----
+  public void release(Buffer buffer) {
+    if (buffer.capacity() <= maxRetainedBytes) {
+      buffer.reset();
+      pool.offer(buffer); // Simply dropped if the pool is full
+    }
+  }
+
+
+  //----
+  public static class Buffer extends ByteArrayOutputStream {
+
+    private Buffer() {
+      super(8192);
+    }
+
+    int capacity() {
+      return buf.length;
+    }
+
+  }
+
+}
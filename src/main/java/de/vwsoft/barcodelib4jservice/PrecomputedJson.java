@@ -0,0 +1,61 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+
+// A JSON response body that is serialized once, for responses that do not change while the
+// application runs (metadata, font names). The strong ETag is a SHA-256 hash of the bytes, so it
+// only changes with the content, e.g. after an update of Barcode-Lib4J, provided the value is
+// serialized in a fixed order (lists, records, maps with a defined iteration order). Clients are asked to
+// revalidate ("no-cache") and get an HTTP 304 without body while their copy is current.
+//
+// Immutable and therefore thread-safe. The body array is never modified after construction.
+final class PrecomputedJson {
+  private static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePublic();
+
+  private final byte[] body;
+  private final String eTag;
+
+
+  //----
+  private PrecomputedJson(byte[] body) {
+    this.body = body;
+    try {
+      this.eTag = '"' + HexFormat.of().formatHex(
+          MessageDigest.getInstance("SHA-256").digest(body)) + '"';
+    } catch (NoSuchAlgorithmException e) { // Every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+
+  //----
+  static PrecomputedJson of(ObjectMapper objectMapper, Object value) {
+    try {
+      return new PrecomputedJson(objectMapper.writeValueAsBytes(value));
+    } catch (JsonProcessingException e) { // Should never occur - only lists, maps and records
+      throw new IllegalStateException(e);
+    }
+  }
+
+
+  //---- The body, or HTTP 304 if 'ifNoneMatch' (may be null) names the current ETag
+  ResponseEntity<byte[]> toResponse(String ifNoneMatch) {
+    if (ifNoneMatch != null && BarcodeController.eTagMatches(ifNoneMatch, eTag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+          .eTag(eTag).cacheControl(CACHE_CONTROL).build(); // HTTP 304
+    }
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).eTag(eTag)
+        .cacheControl(CACHE_CONTROL).contentLength(body.length).body(body);
+  }
+
+}
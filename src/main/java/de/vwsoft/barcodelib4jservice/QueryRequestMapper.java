@@ -0,0 +1,134 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.lang.reflect.Constructor;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+
+
+// Maps the query parameters of the GET endpoints onto a BarcodeRequest1D or BarcodeRequest2D.
+// Parameters are named like the JSON properties of the POST endpoints, colors are given as comma
+// separated components (e.g. "foreground=0,0,0"). Type and format are part of the path, not the
+// query. The parameters are converted by the ObjectMapper, so they are bound exactly like a JSON
+// body, and validated with the same constraints.
+//
+// Normalization keeps only known, non-empty parameters in alphabetical order (the last one wins if
+// a parameter is repeated). Equivalent URLs therefore have the same normalized query, which lets
+// the GET endpoints redirect them to one canonical URL and so to one CDN and browser cache entry.
+@Component
+public class QueryRequestMapper {
+  private static final Set<String> LIST_PARAMETERS = Set.of("foreground", "background");
+  private static final Set<String> PATH_PARAMETERS = Set.of("type", "format");
+  private static final Pattern LIST_SEPARATOR = Pattern.compile("\\s*,\\s*");
+
+  private final ObjectMapper objectMapper;
+  private final Validator validator;
+  private final Map<Class<?>,Set<String>> parameterNames = Map.of(
+      BarcodeRequest1D.class, queryParameterNames(BarcodeRequest1D.class),
+      BarcodeRequest2D.class, queryParameterNames(BarcodeRequest2D.class));
+
+
+  //----
+  public QueryRequestMapper(ObjectMapper objectMapper, Validator validator) {
+    this.objectMapper = objectMapper;
+    this.validator = validator;
+  }
+
+
+  //----
+  SortedMap<String,String> normalize(Class<? extends BarcodeRequest> requestType,
+      MultiValueMap<String,String> params) {
+    final Set<String> names = parameterNames.get(requestType);
+    SortedMap<String,String> normalized = new TreeMap<>();
+    params.forEach((name, values) -> {
+      String value = values.isEmpty() ? null : values.get(values.size() - 1);
+      if (names.contains(name) && value != null && !value.isEmpty())
+        normalized.put(name, value);
+    });
+    return normalized;
+  }
+
+
+  //---- Form-encodes normalized parameters. The encoding is strict ("+" becomes "%2B"), so the
+  //     result is exactly what a client sends back after following a redirect to it. Commas are
+  //     left as they are: they separate color components, are legal in a query, and clients send
+  //     them unescaped, so "foreground=0,0,0" is already canonical and not redirected.
+  static String toQueryString(SortedMap<String,String> params) {
+    StringBuilder sb = new StringBuilder();
+    params.forEach((name, value) -> {
+      if (sb.length() > 0)
+        sb.append('&');
+      sb.append(URLEncoder.encode(name, StandardCharsets.UTF_8)).append('=')
+        .append(URLEncoder.encode(value, StandardCharsets.UTF_8).replace("%2C", ","));
+    });
+    return sb.toString();
+  }
+
+
+  //---- Expects normalized parameters; 'type' is the name of a BarcodeType or TwoDType constant
+  <T extends BarcodeRequest> T toRequest(Class<T> requestType, String type, ImageFormat format,
+      SortedMap<String,String> params) throws RenderException {
+    Map<String,Object> properties = new HashMap<>(params);
+    for (String name : LIST_PARAMETERS) {
+      String value = params.get(name);
+      if (value != null)
+        properties.put(name, List.of(LIST_SEPARATOR.split(value)));
+    }
+    properties.put("type", type);
+    properties.put("format", format.name());
+    return bind(requestType, properties, "Invalid query parameter value");
+  }
+
+
+  //---- Binds properties named and typed like those of a JSON body (also used for the messages of
+  //     the gRPC service) and validates the result. Throws an exception (HTTP 400) with
+  //     'invalidValueMessage' if a value cannot be converted, or with the constraint violations.
+  <T extends BarcodeRequest> T bind(Class<T> requestType, Map<String,Object> properties,
+      String invalidValueMessage) throws RenderException {
+    final T r;
+    try {
+      r = objectMapper.convertValue(properties, requestType);
+    } catch (IllegalArgumentException e) {
+      throw RenderException.badRequest(invalidValueMessage);
+    }
+    Set<ConstraintViolation<T>> violations = validator.validate(r);
+    if (!violations.isEmpty()) {
+      throw RenderException.badRequest(violations.stream().map(ConstraintViolation::getMessage)
+          .sorted().collect(Collectors.joining("; ")));
+    }
+    return r;
+  }
+
+
+  //---- The JSON property names of the @JsonCreator constructor, minus those taken from the path
+  private static Set<String> queryParameterNames(Class<? extends BarcodeRequest> requestType) {
+    for (Constructor<?> constructor : requestType.getConstructors()) {
+      if (constructor.isAnnotationPresent(JsonCreator.class)) {
+        return Arrays.stream(constructor.getParameters())
+            .map(parameter -> parameter.getAnnotation(JsonProperty.class).value())
+            .filter(name -> !PATH_PARAMETERS.contains(name))
+            .collect(Collectors.toUnmodifiableSet());
+      }
+    }
+    throw new IllegalStateException("No @JsonCreator constructor in " + requestType.getName());
+  }
+
+}
@@ -0,0 +1,219 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+
+// Limits the number of requests that draw and encode at the same time. Rendering is CPU-bound
+// Java2D work, so running more renders than the CPU can handle only adds context switches and
+// latency - in particular when request handling runs on (virtual) threads in large numbers.
+// Requests beyond the limit wait in a bounded queue for at most 'maxWaitNanos'. If the queue is
+// full or the wait times out, the request is rejected right away (HTTP 503 with Retry-After),
+// instead of piling up work that would be finished long after the client gave up.
+// The limit is either fixed, or adapted to the measured render latency by a GradientLimit.
+//
+// Background work (render jobs) acquires its permits separately. They are only granted while no
+// request waits in the queue and are never rejected, so queued background work always yields to
+// interactive requests, but uses the capacity they leave. Background work that a client waits for
+// (label sheet cells) yields the same way, but is rejected after the same max. wait as requests.
+public class RenderBulkhead {
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition permitAvailable = lock.newCondition();
+  private final Condition backgroundPermitAvailable = lock.newCondition();
+  private final GradientLimit adaptiveLimit; // 'null' if the limit is fixed
+  private final int maxQueue;
+  private final long maxWaitNanos;
+  private int limit;
+  private int inFlight;
+  private int waiting;
+  private int backgroundWaiting;
+
+  private final Timer waitTimer;
+  private final Counter rejections;
+
+
+  //----
+  public RenderBulkhead(String name, int limit, GradientLimit adaptiveLimit, int maxQueue,
+      long maxWaitNanos, MeterRegistry registry) {
+    this.limit = adaptiveLimit != null ? adaptiveLimit.getLimit() : limit;
+    this.adaptiveLimit = adaptiveLimit;
+    this.maxQueue = maxQueue;
+    this.maxWaitNanos = maxWaitNanos;
+
+    Gauge.builder("barcode.bulkhead.queue", this, b -> b.getWaiting()).tag("pool", name)
+        .description("Requests waiting for a render permit").register(registry);
+    Gauge.builder("barcode.bulkhead.in.flight", this, b -> b.getInFlight()).tag("pool", name)
+        .description("Requests currently drawing or encoding").register(registry);
+    Gauge.builder("barcode.bulkhead.limit", this, b -> b.getLimit()).tag("pool", name)
+        .description("Current number of permitted concurrent renders").register(registry);
+    this.waitTimer = Timer.builder("barcode.bulkhead.wait").tag("pool", name)
+        .description("Time spent waiting for a render permit")
+        .publishPercentileHistogram().register(registry);
+    this.rejections = Counter.builder("barcode.bulkhead.rejections").tag("pool", name)
+        .description("Requests rejected with HTTP 503").register(registry);
+  }
+
+
+  //---- Returns a permit, which must be closed once rendering is finished. Throws an exception
+  //     (HTTP 503) if the queue is full or no permit became available in time.
+  public Permit acquire() throws RenderException {
+    final long start = System.nanoTime();
+    lock.lock();
+    try {
+      if (inFlight < limit && waiting == 0) // Fast path. Queued requests are served first.
+        return new Permit(++inFlight);
+      if (waiting >= maxQueue)
+        throw reject();
+      waiting++;
+      try {
+        long remainingNanos = maxWaitNanos;
+        while (inFlight >= limit) {
+          if (remainingNanos <= 0L)
+            throw reject();
+          remainingNanos = permitAvailable.awaitNanos(remainingNanos);
+        }
+        return new Permit(++inFlight);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw reject();
+      } finally {
+        waiting--;
+        if (waiting == 0 && inFlight < limit) // E.g. after a timeout, background work may go on
+          backgroundPermitAvailable.signal();
+      }
+    } finally {
+      lock.unlock();
+      waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+
+  //---- Returns a permit for background work, which must be closed once rendering is finished.
+  //     Waits as long as requests are queued or the limit is reached.
+  public Permit acquireBackground() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      backgroundWaiting++;
+      try {
+        while (inFlight >= limit || waiting > 0)
+          backgroundPermitAvailable.await();
+      } finally {
+        backgroundWaiting--;
+      }
+      return new Permit(++inFlight);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  //---- Returns a permit for background work that a client waits for, which must be closed once
+  //     rendering is finished. Waits as long as requests are queued or the limit is reached, but
+  //     throws an exception (HTTP 503) if no permit became available in time.
+  public Permit acquireBoundedBackground() throws RenderException, InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      backgroundWaiting++;
+      try {
+        long remainingNanos = maxWaitNanos;
+        while (inFlight >= limit || waiting > 0) {
+          if (remainingNanos <= 0L)
+            throw reject();
+          remainingNanos = backgroundPermitAvailable.awaitNanos(remainingNanos);
+        }
+      } finally {
+        backgroundWaiting--;
+      }
+      return new Permit(++inFlight);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  //----
+  private RenderException reject() {
+    rejections.increment();
+    return RenderException.unavailable("Server busy, please retry later");
+  }
+
+
+  //----
+  private void release(long rttNanos, int inFlightAtStart) {
+    lock.lock();
+    try {
+      inFlight--;
+      final int previousLimit = limit;
+      if (adaptiveLimit != null)
+        limit = adaptiveLimit.onSample(rttNanos, inFlightAtStart);
+      final Condition next = waiting > 0 || backgroundWaiting == 0 ? permitAvailable :
+          backgroundPermitAvailable; // Queued requests first
+      if (limit > previousLimit)
+        next.signalAll();
+      else
+        next.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  //----
+  int getWaiting() {
+    lock.lock();
+    try {
+      return waiting;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  //----
+  int getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  //----
+  int getLimit() {
+    lock.lock();
+    try {
+      return limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  //---- Closing a permit more than once has no effect. The time from acquiring to closing is the
+  //     latency sample for the adaptive limit.
+  public final class Permit implements AutoCloseable {
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final long start = System.nanoTime();
+    private final int inFlightAtStart;
+
+    private Permit(int inFlightAtStart) {
+      this.inFlightAtStart = inFlightAtStart;
+    }
+
+    @Override
+    public void close() {
+      if (closed.compareAndSet(false, true))
+        release(System.nanoTime() - start, inFlightAtStart);
+    }
+  }
+
+}
@@ -0,0 +1,59 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+
+
+// Provides the RenderBulkhead for a request. Raster and vector formats differ in cost by orders
+// of magnitude (a 2400 dpi CMYK JPG versus a small SVG), so by default each group gets its own
+// bulkhead with its own adaptive limit. Otherwise, cheap vector renders would drag the measured
+// latency down and expensive raster renders would be admitted in too large numbers.
+@Component
+public class RenderBulkheads {
+  private final RenderBulkhead raster;
+  private final RenderBulkhead vector;
+  private final int retryAfterSeconds;
+
+
+  //----
+  public RenderBulkheads(MeterRegistry registry,
+      @Value("${render.bulkhead.max-concurrent:0}") int maxConcurrent,
+      @Value("${render.bulkhead.max-queue:100}") int maxQueue,
+      @Value("${render.bulkhead.max-wait-ms:1000}") long maxWaitMillis,
+      @Value("${render.bulkhead.retry-after-seconds:1}") int retryAfterSeconds,
+      @Value("${render.limiter.adaptive:true}") boolean adaptive,
+      @Value("${render.limiter.min-limit:1}") int minLimit,
+      @Value("${render.limiter.max-limit:0}") int maxLimit,
+      @Value("${render.limiter.smoothing:0.2}") double smoothing,
+      @Value("${render.limiter.separate-raster-vector:true}") boolean separate) {
+    final int cores = Runtime.getRuntime().availableProcessors();
+    final int limit = maxConcurrent > 0 ? maxConcurrent : cores;
+    final long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    this.retryAfterSeconds = retryAfterSeconds;
+
+    this.raster = new RenderBulkhead(separate ? "raster" : "all", limit,
+        adaptive ? new GradientLimit(limit, minLimit, maxLimit > 0 ? maxLimit : 4 * cores,
+            smoothing) : null, maxQueue, maxWaitNanos, registry);
+    this.vector = !separate ? raster : new RenderBulkhead("vector", limit,
+        adaptive ? new GradientLimit(limit, minLimit, maxLimit > 0 ? maxLimit : 4 * cores,
+            smoothing) : null, maxQueue, maxWaitNanos, registry);
+  }
+
+
+  //----
+  public RenderBulkhead forFormat(ImageFormat format) {
+    return format.isRasterFormat() ? raster : vector;
+  }
+
+
+  //----
+  public int getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+}
@@ -0,0 +1,17 @@
+package de.vwsoft.barcodelib4jservice;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+// Caches rendered output files, keyed by BarcodeRequest#getCacheKey(). The capacity is given in
+// bytes of output data ('cache.render.max-bytes', 0 disables the cache).
+@Component
+public class RenderCache extends LruCache<String,byte[]> {
+
+  //----
+  public RenderCache(@Value("${cache.render.max-bytes:67108864}") long maxBytes) {
+    super(maxBytes, data -> data.length);
+  }
+
+}
@@ -0,0 +1,100 @@
+package de.vwsoft.barcodelib4jservice;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+
+// JDK Flight Recorder event committed for every barcode request that reaches the render path (REST
+// and gRPC), including render cache hits and failed requests. Carries the same dimensions as the
+// RenderMetrics plus the content length and the time of each stage, so that hot types and formats
+// can be analyzed in JDK Mission Control next to the GC and CPU samples of the same recording.
+// Recordings are controlled by the JfrRecordingEndpoint or any other JFR tool (e.g. jcmd).
+//
+// Costs next to nothing while no recording is running: the event is only filled in if enabled,
+// and an event that is not committed is not allocated once the JIT has compiled the caller.
+@Name("de.vwsoft.barcodelib4jservice.Render")
+@Label("Barcode Render")
+@Description("One barcode request of the render path, with the time spent in each stage")
+@Category({ "Barcode-Lib4J Service" })
+@StackTrace(false)
+public class RenderEvent extends Event {
+
+  @Label("Type")
+  String type;
+
+  @Label("Format")
+  String format;
+
+  @Label("Color Model")
+  String colorModel;
+
+  @Label("DPI")
+  int dpi;
+
+  @Label("Content Length")
+  @Description("Length of the content in characters")
+  int contentLength;
+
+  @Label("Output Size")
+  @Description("Size of the output file, -1 if the request failed")
+  @DataAmount
+  long outputBytes;
+
+  @Label("Status")
+  @Description("HTTP status of the request (also reported by gRPC)")
+  int status;
+
+  @Label("Cache Hit")
+  @Description("Whether the output file was taken from the render cache")
+  boolean cacheHit;
+
+  @Label("Bind")
+  @Timespan
+  long bindTime;
+
+  @Label("Validate")
+  @Timespan
+  long validateTime;
+
+  @Label("Build")
+  @Timespan
+  long buildTime;
+
+  @Label("Draw")
+  @Timespan
+  long drawTime;
+
+  @Label("Encode")
+  @Timespan
+  long encodeTime;
+
+
+  //---- Commits an event for the request, if a recording has the event enabled
+  static void emit(BarcodeRequest r, RenderTrace trace, int status, long outputBytes,
+      boolean cacheHit) {
+    RenderEvent event = new RenderEvent();
+    if (!event.isEnabled())
+      return;
+    event.type = r.getType() != null ? r.getType().name() : null; // Null if the request is invalid
+    event.format = r.format != null ? r.format.name() : null;
+    event.colorModel = r.colorModel.name();
+    event.dpi = r.dpi;
+    event.contentLength = r.content != null ? r.content.length() : 0;
+    event.outputBytes = outputBytes;
+    event.status = status;
+    event.cacheHit = cacheHit;
+    event.bindTime = trace.getNanos(RenderTrace.Stage.BIND);
+    event.validateTime = trace.getNanos(RenderTrace.Stage.VALIDATE);
+    event.buildTime = trace.getNanos(RenderTrace.Stage.BUILD);
+    event.drawTime = trace.getNanos(RenderTrace.Stage.DRAW);
+    event.encodeTime = trace.getNanos(RenderTrace.Stage.ENCODE);
+    event.commit();
+  }
+
+}
@@ -0,0 +1,37 @@
+package de.vwsoft.barcodelib4jservice;
+
+import org.springframework.http.HttpStatus;
+
+
+// Thrown by the BarcodeRenderer when a request cannot be rendered. Carries the HTTP status that
+// the REST endpoints respond with: 400 for invalid parameters, 422 for invalid user content and
+// 503 if the server is too busy to render the request now.
+public class RenderException extends Exception {
+  public final HttpStatus status;
+
+
+  //----
+  public RenderException(HttpStatus status, String message) {
+    super(message);
+    this.status = status;
+  }
+
+
+  //----
+  static RenderException badRequest(String message) {
+    return new RenderException(HttpStatus.BAD_REQUEST, message); // HTTP 400
+  }
+
+
+  //----
+  static RenderException unprocessable(String message) {
+    return new RenderException(HttpStatus.UNPROCESSABLE_ENTITY, message); // HTTP 422
+  }
+
+
+  //----
+  static RenderException unavailable(String message) {
+    return new RenderException(HttpStatus.SERVICE_UNAVAILABLE, message); // HTTP 503
+  }
+
+}
@@ -0,0 +1,208 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import de.vwsoft.barcodelib4j.image.ImageColorModel;
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+import de.vwsoft.barcodelib4j.oned.BarcodeType;
+import de.vwsoft.barcodelib4j.twod.TwoDType;
+
+
+// Records the stages of each rendered request as Micrometer timers, tagged by symbol type, output
+// format, color model, DPI bucket and outcome (HTTP status), plus the total render time and the
+// size of the output with a few coarse buckets each. Exposed through the Actuator Prometheus
+// endpoint on the management port as 'barcode_render_stage_seconds' (count, sum and max only),
+// 'barcode_render_duration_seconds' and 'barcode_render_output_size_bytes' (histograms tagged by
+// type, format and outcome only, so that the number of time series stays manageable), together
+// with the counters of the render cache, the disk cache and the symbol cache.
+// 'barcode_render_coalesced' counts the renders saved by coalescing identical concurrent requests
+// (see RenderService). Requests rejected by bean validation are recorded with outcome 400 as well
+// (see WebConfig); their missing type or format is tagged "none".
+// The meters are registered on first use and kept in arrays indexed by the ordinals of the tag
+// values, so that recording a render needs neither builders nor registry lookups.
+@Component
+public class RenderMetrics {
+  private static final Duration[] DURATION_BUCKETS = {
+      Duration.ofMillis(5), Duration.ofMillis(25), Duration.ofMillis(100), Duration.ofMillis(250),
+      Duration.ofSeconds(1), Duration.ofSeconds(5) };
+  private static final double[] SIZE_BUCKETS = { 4096, 32768, 262144, 2097152, 16777216 };
+
+  private static final RenderTrace.Stage[] STAGES = RenderTrace.Stage.values();
+  private static final String[] DPI_BUCKETS =
+      { "0", "150-300", "301-600", "601-1200", "1201-2400" };
+  private static final int[] STATUSES = { 200, 400, 422, 500, 503 }; // Others are not kept
+  private static final int TYPES_1D = BarcodeType.values().length;
+  private static final int TYPES = TYPES_1D + TwoDType.values().length + 1;
+  private static final int FORMATS = ImageFormat.values().length + 1;
+  private static final int COLOR_MODELS = ImageColorModel.values().length;
+
+  private final MeterRegistry registry;
+  private final Counter coalesced;
+
+  // Indexed by type, format and outcome (see 'meters')
+  private final AtomicReferenceArray<Meters> meters =
+      new AtomicReferenceArray<>(TYPES * FORMATS * STATUSES.length);
+
+
+  //----
+  public RenderMetrics(MeterRegistry registry, RenderCache renderCache, DiskCache diskCache,
+      BarcodeRenderer renderer) {
+    this.registry = registry;
+    this.coalesced = Counter.builder("barcode.render.coalesced")
+        .description("Requests answered with the output of an identical concurrent request")
+        .register(registry);
+    bindCache(registry, "render", renderCache::getStats);
+    bindCache(registry, "symbol", renderer.getSymbolCache()::getStats);
+    if (diskCache.isEnabled()) {
+      bindCache(registry, "disk", diskCache::getStats);
+      FunctionCounter.builder("barcode.cache.compactions", diskCache, DiskCache::getCompactions)
+          .description("Records copied forward when their disk cache segment was evicted")
+          .tags("cache", "disk").register(registry);
+    }
+  }
+
+
+  //---- Records all stages of the trace that have been executed. Also commits the RenderEvent,
+  //     if a JFR recording is running.
+  public void record(BarcodeRequest r, RenderTrace trace, int status, long outputBytes) {
+    RenderEvent.emit(r, trace, status, outputBytes, false);
+    final Meters m = meters(r.getType(), r.format, status);
+    final int stageBase = (r.colorModel.ordinal() * DPI_BUCKETS.length + dpiBucketIndex(r.dpi))
+        * STAGES.length;
+    long totalNanos = 0L;
+    for (RenderTrace.Stage stage : STAGES) {
+      long nanos = trace.getNanos(stage);
+      if (nanos > 0) {
+        m.stage(stageBase + stage.ordinal(), r.colorModel, r.dpi, stage)
+            .record(nanos, TimeUnit.NANOSECONDS);
+        totalNanos += nanos;
+      }
+    }
+    m.duration.record(totalNanos, TimeUnit.NANOSECONDS);
+    if (outputBytes >= 0)
+      m.outputSize.record(outputBytes);
+  }
+
+
+  //---- The meters of the type, format and outcome. Registered on first use; for an outcome
+  //     other than the usual ones, they are looked up in the registry each time.
+  private Meters meters(Enum<?> type, ImageFormat format, int status) {
+    int statusIndex = STATUSES.length - 1;
+    while (statusIndex >= 0 && STATUSES[statusIndex] != status)
+      statusIndex--;
+    if (statusIndex < 0)
+      return new Meters(type, format, status);
+    final int index = (typeIndex(type) * FORMATS + (format != null ? format.ordinal() :
+        FORMATS - 1)) * STATUSES.length + statusIndex;
+    Meters m = meters.get(index);
+    if (m == null) { // Registering twice returns the same meters, so a race does no harm
+      m = new Meters(type, format, status);
+      meters.set(index, m);
+    }
+    return m;
+  }
+
+
+  //----
+  private static int typeIndex(Enum<?> type) {
+    if (type instanceof BarcodeType t)
+      return t.ordinal();
+    if (type instanceof TwoDType t)
+      return TYPES_1D + t.ordinal();
+    return TYPES - 1; // None
+  }
+
+
+  //---- Records a request that shared the output of an identical one, i.e. a render saved. Also
+  //     commits the RenderEvent (as a cache hit), if a JFR recording is running.
+  public void recordCoalesced(BarcodeRequest r, RenderTrace trace, long outputBytes) {
+    RenderEvent.emit(r, trace, 200, outputBytes, true);
+    coalesced.increment();
+  }
+
+
+  //---- Tag value of a type or format, which is missing if the request failed validation
+  private static String name(Enum<?> value) {
+    return value != null ? value.name() : "none";
+  }
+
+
+  //---- Bounded number of tag values, so that the DPI does not blow up the number of time series
+  static String dpiBucket(int dpi) {
+    return DPI_BUCKETS[dpiBucketIndex(dpi)];
+  }
+
+
+  //----
+  private static int dpiBucketIndex(int dpi) {
+    return dpi == 0 ? 0 : dpi <= 300 ? 1 : dpi <= 600 ? 2 : dpi <= 1200 ? 3 : 4;
+  }
+
+
+  //----
+  static void bindCache(MeterRegistry registry, String name, Supplier<LruCache.Stats> cache) {
+    Tags tags = Tags.of("cache", name);
+    FunctionCounter.builder("barcode.cache.hits", cache, c -> c.get().hits())
+        .tags(tags).register(registry);
+    FunctionCounter.builder("barcode.cache.misses", cache, c -> c.get().misses())
+        .tags(tags).register(registry);
+    FunctionCounter.builder("barcode.cache.evictions", cache, c -> c.get().evictions())
+        .tags(tags).register(registry);
+    Gauge.builder("barcode.cache.size", cache, c -> c.get().weight())
+        .tags(tags).register(registry);
+  }
+
+
+  //---- The meters of one type, format and outcome. The stage timers are indexed by color model,
+  //     DPI bucket and stage.
+  private final class Meters {
+    private final Tags outcomeTags;
+    private final Timer duration;
+    private final DistributionSummary outputSize;
+    private final AtomicReferenceArray<Timer> stages =
+        new AtomicReferenceArray<>(COLOR_MODELS * DPI_BUCKETS.length * STAGES.length);
+
+    Meters(Enum<?> type, ImageFormat format, int status) {
+      final Tags tags = Tags.of("type", name(type), "format", name(format));
+      this.outcomeTags = tags.and("outcome", Integer.toString(status));
+      this.duration = Timer.builder("barcode.render.duration")
+          .description("Time spent in all stages of rendering a barcode")
+          .tags(outcomeTags)
+          .serviceLevelObjectives(DURATION_BUCKETS)
+          .register(registry);
+      this.outputSize = DistributionSummary.builder("barcode.render.output.size")
+          .description("Size of the rendered output file")
+          .baseUnit("bytes")
+          .tags(tags)
+          .serviceLevelObjectives(SIZE_BUCKETS)
+          .register(registry);
+    }
+
+    Timer stage(int index, ImageColorModel colorModel, int dpi, RenderTrace.Stage stage) {
+      Timer timer = stages.get(index);
+      if (timer == null) {
+        timer = Timer.builder("barcode.render.stage")
+            .description("Time spent in one stage of rendering a barcode")
+            .tags(outcomeTags)
+            .tags("color.model", colorModel.name(), "dpi", dpiBucket(dpi),
+                "stage", stage.name().toLowerCase())
+            .register(registry);
+        stages.set(index, timer);
+      }
+      return timer;
+    }
+  }
+
+}
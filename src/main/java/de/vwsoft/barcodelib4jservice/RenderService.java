@@ -0,0 +1,239 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+
+
+// The render path shared by the REST endpoints of the BarcodeController and the gRPC service:
+// render cache, render bulkhead and metrics around the BarcodeRenderer. Requests are expected to be
+// bound and annotation-validated already; the remaining validation happens while drawing.
+//
+// Identical requests (equal cache key) that miss the cache at the same time are coalesced: the
+// first one renders, the others wait for it and share its output instead of rendering the same
+// file again before the cache is filled ('render.coalescing.enabled'). They share its error as
+// well, if it is in their language. They render on their own instead if it fails unexpectedly, if
+// it is shed by the bulkhead (HTTP 503: the load may have eased since, and each request gets its
+// own chance at a permit), or if it takes longer than 'render.bulkhead.max-wait-ms', the time they
+// would have waited for a permit themselves. 'draw' is never coalesced (see BarcodeController).
+//
+// Managed as a singleton by Spring and used concurrently by many threads. Therefore, any instance
+// fields (if present) must be thread-safe.
+@Component
+public class RenderService {
+  private final BarcodeRenderer renderer;
+  private final RenderCache renderCache;
+  private final RenderMetrics renderMetrics;
+  private final RenderBulkheads bulkheads;
+  private final boolean coalescing;
+  private final long maxWaitMillis;
+  private final ConcurrentHashMap<String,Flight> inFlight = new ConcurrentHashMap<>();
+
+
+  //----
+  public RenderService(BarcodeRenderer renderer, RenderCache renderCache,
+      RenderMetrics renderMetrics, RenderBulkheads bulkheads,
+      @Value("${render.coalescing.enabled:true}") boolean coalescing,
+      @Value("${render.bulkhead.max-wait-ms:1000}") long maxWaitMillis) {
+    this.renderer = renderer;
+    this.renderCache = renderCache;
+    this.renderMetrics = renderMetrics;
+    this.bulkheads = bulkheads;
+    this.coalescing = coalescing;
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+
+  //---- Returns the output file from the render cache, or renders, caches and returns it. Rendered
+  //     requests are recorded in the metrics (also failed ones); cache hits only in the cache
+  //     counters and as a RenderEvent. Throws an exception with HTTP status 400, 422 or 503.
+  public byte[] render(BarcodeRequest r, boolean useGerman, RenderTrace trace)
+      throws RenderException {
+    byte[] data = getCached(r, trace);
+    return data != null ? data : renderAndCache(r, useGerman, trace);
+  }
+
+
+  //---- Returns the output file from the render cache, or 'null'
+  public byte[] getCached(BarcodeRequest r, RenderTrace trace) {
+    byte[] data = renderCache.get(r.getCacheKey());
+    if (data != null)
+      RenderEvent.emit(r, trace, 200, data.length, true);
+    return data;
+  }
+
+
+  //---- Renders the request without looking into the render cache first, caches and returns it.
+  //     For callers that have checked the cache (and possibly other sources) themselves. Waits
+  //     for an identical request that is already rendering, if there is one.
+  public byte[] renderAndCache(BarcodeRequest r, boolean useGerman, RenderTrace trace)
+      throws RenderException {
+    if (!coalescing)
+      return renderUncoalesced(r, useGerman, trace);
+
+    final String key = r.getCacheKey();
+    final Flight flight = new Flight(new CompletableFuture<>(), useGerman);
+    final Flight leader = inFlight.putIfAbsent(key, flight);
+    if (leader != null)
+      return await(leader, r, useGerman, trace);
+    try {
+      byte[] data = renderUncoalesced(r, useGerman, trace);
+      flight.result().complete(data);
+      return data;
+    } catch (RenderException | RuntimeException | Error e) {
+      flight.result().completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, flight); // Later requests find the output in the cache
+    }
+  }
+
+
+  //---- Shares the output of the leader. Its RenderException is thrown as well, unless its message
+  //     is in the other language or it was shed (HTTP 503). Then, or if the leader failed
+  //     unexpectedly or does not finish within 'maxWaitMillis', the request is rendered here.
+  private byte[] await(Flight leader, BarcodeRequest r, boolean useGerman, RenderTrace trace)
+      throws RenderException {
+    try {
+      byte[] data = leader.result().get(maxWaitMillis, TimeUnit.MILLISECONDS);
+      renderMetrics.recordCoalesced(r, trace, data.length);
+      return data;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw RenderException.unavailable("Server busy, please retry later");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RenderException renderException
+          && renderException.status != HttpStatus.SERVICE_UNAVAILABLE
+          && leader.useGerman() == useGerman)
+        throw renderException; // HTTP 400 or 422
+      return renderUncoalesced(r, useGerman, trace);
+    } catch (TimeoutException e) {
+      return renderUncoalesced(r, useGerman, trace);
+    }
+  }
+
+
+  //----
+  private byte[] renderUncoalesced(BarcodeRequest r, boolean useGerman, RenderTrace trace)
+      throws RenderException {
+    Drawing drawing = draw(r, useGerman, trace);
+    final byte[] data;
+    try {
+      data = renderer.encode(drawing.barcode());
+    } catch (RuntimeException | Error e) { // Unexpected, HTTP 500
+      renderMetrics.record(r, trace, 500, -1L);
+      throw e;
+    } finally {
+      drawing.permit().close();
+    }
+    renderCache.put(r.getCacheKey(), data);
+    renderMetrics.record(r, trace, 200, data.length);
+    return data;
+  }
+
+
+  //---- Renders a request of a background job within a background permit of the render bulkhead,
+  //     which is only granted while no interactive request waits. The render cache is bypassed,
+  //     so that bulk output does not evict the entries of interactive traffic. Throws an exception
+  //     with HTTP status 400 or 422.
+  public byte[] renderBackground(BarcodeRequest r, boolean useGerman, RenderTrace trace)
+      throws RenderException, InterruptedException {
+    try (RenderBulkhead.Permit permit = bulkheads.forFormat(r.format).acquireBackground()) {
+      byte[] data = renderer.encode(renderer.draw(r, useGerman, trace));
+      renderMetrics.record(r, trace, 200, data.length);
+      return data;
+    } catch (RenderException e) { // HTTP 400 or 422
+      renderMetrics.record(r, trace, e.status.value(), -1L);
+      throw e;
+    } catch (RuntimeException | Error e) { // Unexpected, HTTP 500
+      renderMetrics.record(r, trace, 500, -1L);
+      throw e;
+    }
+  }
+
+
+  //---- Prepares a cell of a label sheet (see BarcodeRenderer#prepare) within a background permit
+  //     of the render bulkhead, like 'renderBackground', but the client waits for the sheet, so
+  //     the wait for the permit is bounded. The cell has no output file of its own, so it is
+  //     recorded without a size. Throws an exception with HTTP status 400, 422 or 503.
+  public BarcodeRenderer.PreparedBarcode prepareBackground(BarcodeRequest r, boolean useGerman,
+      RenderTrace trace) throws RenderException, InterruptedException {
+    try (RenderBulkhead.Permit permit =
+        bulkheads.forFormat(r.format).acquireBoundedBackground()) {
+      trace.mark();
+      BarcodeRenderer.PreparedBarcode prepared = renderer.prepare(r, useGerman);
+      trace.end(RenderTrace.Stage.BUILD);
+      renderMetrics.record(r, trace, 200, -1L);
+      return prepared;
+    } catch (RenderException e) { // HTTP 400 or 422
+      renderMetrics.record(r, trace, e.status.value(), -1L);
+      throw e;
+    } catch (RuntimeException | Error e) { // Unexpected, HTTP 500
+      renderMetrics.record(r, trace, 500, -1L);
+      throw e;
+    }
+  }
+
+
+  //---- Returns a permit of the render bulkhead for work that the caller draws and encodes itself
+  //     (label sheet pages), which must close it. Throws an exception (HTTP 503) if it is shed.
+  public RenderBulkhead.Permit acquire(ImageFormat format) throws RenderException {
+    return bulkheads.forFormat(format).acquire();
+  }
+
+
+  //---- Validates and draws the request within a permit of the render bulkhead. Drawing and
+  //     encoding are CPU-bound, so the caller must close the permit once it has encoded the
+  //     barcode, and record the metrics. Failed requests are recorded here, unexpected failures
+  //     with HTTP status 500.
+  public Drawing draw(BarcodeRequest r, boolean useGerman, RenderTrace trace)
+      throws RenderException {
+    RenderBulkhead.Permit permit = null;
+    try {
+      permit = bulkheads.forFormat(r.format).acquire();
+      return new Drawing(renderer.draw(r, useGerman, trace), permit); // Completes validation
+    } catch (Throwable t) { // HTTP 400, 422, 503 or, if unexpected, 500
+      if (permit != null)
+        permit.close();
+      renderMetrics.record(r, trace, t instanceof RenderException e ? e.status.value() : 500, -1L);
+      throw t;
+    }
+  }
+
+
+  //---- Whether rendered output files are cached, i.e. 'render' is worth more than streaming
+  public boolean isCaching() {
+    return renderCache.isEnabled();
+  }
+
+
+  //---- See BarcodeRenderer#getRenderVersion()
+  public String getRenderVersion() {
+    return renderer.getRenderVersion();
+  }
+
+
+  //----
+  public int getRetryAfterSeconds() {
+    return bulkheads.getRetryAfterSeconds();
+  }
+
+
+  //---- A drawn barcode and the bulkhead permit it was drawn in
+  public record Drawing(DrawnBarcode barcode, RenderBulkhead.Permit permit) {
+  }
+
+
+  //---- The pending output of a request that is rendering, and the language of its errors
+  private record Flight(CompletableFuture<byte[]> result, boolean useGerman) {
+  }
+
+}
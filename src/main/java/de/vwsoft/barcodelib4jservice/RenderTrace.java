@@ -0,0 +1,44 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.concurrent.TimeUnit;
+
+
+// Collects the time spent in each stage of rendering a single request. A trace is created when the
+// request body is read (see RenderTraceAdvice), passed along with the request through the
+// BarcodeRenderer and finally handed to RenderMetrics. Used by one thread at a time only.
+public class RenderTrace {
+  static final String ATTRIBUTE = "de.vwsoft.barcodelib4jservice.RenderTrace";
+
+  public enum Stage { BIND, VALIDATE, BUILD, DRAW, ENCODE }
+
+  private final long[] stageNanos = new long[Stage.values().length];
+  private long mark = System.nanoTime();
+
+
+  //---- Starts timing the next stage
+  public void mark() {
+    mark = System.nanoTime();
+  }
+
+
+  //---- Ends the given stage. Its time is counted from the last mark (or the end of the previous
+  //     stage) on, and the next stage starts right away.
+  public void end(Stage stage) {
+    long now = System.nanoTime();
+    stageNanos[stage.ordinal()] += now - mark;
+    mark = now;
+  }
+
+
+  //---- Returns 0 if the stage was not executed
+  public long getNanos(Stage stage) {
+    return stageNanos[stage.ordinal()];
+  }
+
+
+  //----
+  public long getMicros(Stage stage) {
+    return TimeUnit.NANOSECONDS.toMicros(stageNanos[stage.ordinal()]);
+  }
+
+}
@@ -0,0 +1,50 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.lang.reflect.Type;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+
+// Starts a RenderTrace when a barcode request body is about to be read and ends its BIND stage
+// once the JSON has been deserialized. The trace is stored as a request attribute, from where
+// BarcodeController picks it up.
+@ControllerAdvice
+public class RenderTraceAdvice extends RequestBodyAdviceAdapter {
+
+  //----
+  @Override
+  public boolean supports(MethodParameter methodParameter, Type targetType,
+      Class<? extends HttpMessageConverter<?>> converterType) {
+    return targetType instanceof Class<?> c && BarcodeRequest.class.isAssignableFrom(c);
+  }
+
+
+  //----
+  @Override
+  public HttpInputMessage beforeBodyRead(HttpInputMessage inputMessage, MethodParameter parameter,
+      Type targetType, Class<? extends HttpMessageConverter<?>> converterType) {
+    RequestContextHolder.currentRequestAttributes().setAttribute(RenderTrace.ATTRIBUTE,
+        new RenderTrace(), RequestAttributes.SCOPE_REQUEST);
+    return inputMessage;
+  }
+
+
+  //----
+  @Override
+  public Object afterBodyRead(Object body, HttpInputMessage inputMessage,
+      MethodParameter parameter, Type targetType,
+      Class<? extends HttpMessageConverter<?>> converterType) {
+    Object trace = RequestContextHolder.currentRequestAttributes()
+        .getAttribute(RenderTrace.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    if (trace instanceof RenderTrace t)
+      t.end(RenderTrace.Stage.BIND);
+    return body;
+  }
+
+}
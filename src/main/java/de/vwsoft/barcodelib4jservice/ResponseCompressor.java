@@ -0,0 +1,115 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+
+
+// Gzip compression of output files for clients that send "Accept-Encoding: gzip". Level and minimum
+// size are configured per ImageFormat ('compression.<format>.level' 1-9, 0 = never compressed, and
+// 'compression.<format>.min-bytes'). PNG and JPG are compressed already and are off by default.
+// Compression is CPU-bound like rendering, so it runs inline on at most 'compression.threads'
+// request threads at once (0 = one per available processor). If all permits are taken, the file is
+// sent uncompressed rather than waiting for one.
+//
+// Managed as a singleton by Spring and used concurrently by many threads. Therefore, any instance
+// fields (if present) must be thread-safe.
+@Component
+public class ResponseCompressor {
+  static final String GZIP = "gzip";
+
+  private final Map<ImageFormat,Integer> levels = new EnumMap<>(ImageFormat.class);
+  private final Map<ImageFormat,Integer> minBytes = new EnumMap<>(ImageFormat.class);
+  private final Semaphore permits;
+
+
+  //----
+  public ResponseCompressor(Environment environment,
+      @Value("${compression.threads:0}") int threads) {
+    for (ImageFormat format : ImageFormat.values()) {
+      final String prefix = "compression." + format.name().toLowerCase(Locale.ROOT);
+      final boolean compressed = format == ImageFormat.PNG || format == ImageFormat.JPG;
+      levels.put(format, Math.max(0, Math.min(9,
+          environment.getProperty(prefix + ".level", Integer.class, compressed ? 0 : 6))));
+      minBytes.put(format, environment.getProperty(prefix + ".min-bytes", Integer.class, 256));
+    }
+    this.permits = new Semaphore(
+        threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+  }
+
+
+  //---- Whether output files of this format may be sent compressed. Their responses then vary by
+  //     Accept-Encoding, whether a particular one is compressed or not.
+  boolean isEnabled(ImageFormat format) {
+    return levels.get(format) > 0;
+  }
+
+
+  //---- Whether the Accept-Encoding header allows gzip: listed or matched by "*", with q > 0
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null)
+      return false;
+    double gzipQ = -1.0, anyQ = -1.0;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] params = coding.split(";");
+      String name = params[0].trim();
+      if (!name.equalsIgnoreCase(GZIP) && !name.equals("*"))
+        continue;
+      double q = 1.0;
+      for (int i=1; i<params.length; i++) {
+        String param = params[i].trim();
+        if (param.length() > 2 && param.substring(0, 2).equalsIgnoreCase("q=")) {
+          try {
+            q = Double.parseDouble(param.substring(2));
+          } catch (NumberFormatException e) {
+            q = 0.0;
+          }
+        }
+      }
+      if (name.equals("*"))
+        anyQ = q;
+      else
+        gzipQ = q;
+    }
+    return gzipQ >= 0.0 ? gzipQ > 0.0 : anyQ > 0.0;
+  }
+
+
+  //---- Returns the gzip-compressed data, or null if it is below the minimum size of its format,
+  //     does not get any smaller or all compression permits are taken
+  byte[] compress(ImageFormat format, byte[] data) {
+    final int level = levels.get(format);
+    if (level == 0 || data.length < minBytes.get(format) || !permits.tryAcquire())
+      return null;
+    try {
+      byte[] compressed = gzip(data, level);
+      return compressed.length < data.length ? compressed : null;
+    } catch (IOException e) { // Should never occur - nothing but memory is written to
+      throw new IllegalStateException(e);
+    } finally {
+      permits.release();
+    }
+  }
+
+
+  //----
+  private static byte[] gzip(byte[] data, int level) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+    try (OutputStream gzip = new GZIPOutputStream(out, 8192) {{ def.setLevel(level); }}) {
+      gzip.write(data);
+    }
+    return out.toByteArray();
+  }
+
+}
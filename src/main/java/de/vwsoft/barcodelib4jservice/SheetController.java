@@ -0,0 +1,336 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.awt.Graphics2D;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import de.vwsoft.barcodelib4j.image.BarExporter;
+
+
+// Label sheets: many barcodes composed into one document per page (see SheetRequest). The cells of
+// a page are bound, validated and prepared (1D barcodes created, 2D symbols built) in parallel on
+// a bounded worker pool, then drawn one after the other into the Graphics2D of one BarExporter,
+// which is encoded once for the whole page.
+//
+// All of it goes through the render bulkhead of the RenderService, and is recorded in the metrics
+// like other renders: each cell is prepared within a background permit, so a large sheet yields
+// to interactive requests, but a cell that finds no permit within the max. wait of the bulkhead
+// fails with HTTP 503. Drawing and encoding the page takes a normal permit, and so may be shed
+// (HTTP 503) as well. It is taken only once all cells of the page are prepared; holding it while
+// they wait for their permits could starve them.
+//
+// Pages are processed one at a time: only the cells of the current page are held in memory, so
+// memory usage does not depend on the number of pages. A sheet that fits onto one page is answered
+// with the document itself and fails as a whole if a cell fails. Sheets with more pages are
+// answered with a ZIP file of one document per page, written while the pages are being rendered;
+// cells that fail stay empty and are listed in the "manifest.json" entry that concludes the ZIP.
+// A page that is shed is left out of the ZIP; its cells are listed with HTTP status 503.
+//
+// This controller instance is managed as a singleton by Spring. Only one instance exists for the
+// entire application lifecycle and it is reused across all HTTP requests. Therefore, any instance
+// fields (if present) would be shared across threads and must be thread-safe.
+@RestController
+public class SheetController {
+  private static final String TITLE = "Label Sheet";
+
+  private final RenderService renderService;
+  private final BarcodeRenderer renderer;
+  private final QueryRequestMapper requestMapper;
+  private final ObjectMapper objectMapper;
+  private final ExecutorService executor;
+  private final int maxCells;
+
+
+  //----
+  public SheetController(RenderService renderService, BarcodeRenderer renderer,
+      QueryRequestMapper requestMapper, ObjectMapper objectMapper,
+      @Value("${sheet.threads:0}") int threads, @Value("${sheet.max-cells:10000}") int maxCells) {
+    this.renderService = renderService;
+    this.renderer = renderer;
+    this.requestMapper = requestMapper;
+    this.objectMapper = objectMapper;
+    this.maxCells = maxCells;
+
+    final AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(
+        threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), runnable -> {
+          Thread t = new Thread(runnable, "sheet-render-" + threadNumber.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+  }
+
+
+  //----
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+
+  //----
+  @PostMapping("/sheet")
+  public ResponseEntity<?> createSheet(@Valid @RequestBody SheetRequest sheet,
+      @RequestHeader(value = "Accept-Language", defaultValue = "en") String language) {
+    final boolean useGerman = language.startsWith("de");
+
+    // Validate the layout and the page-wide parameters, which are equal in all cells
+    final int count;
+    final BarcodeRequest pageRequest;
+    try {
+      count = countCells(sheet);
+      try {
+        pageRequest = bindCell(sheet, 0);
+      } catch (RenderException e) {
+        throw RenderException.badRequest("Cell 1: " + e.getMessage());
+      }
+      renderer.newExporter(pageRequest, sheet.pageWidth(), sheet.pageHeight());
+    } catch (RenderException e) { // HTTP 400
+      return ResponseEntity.status(e.status).contentType(BarcodeController.TEXT_PLAIN_UTF8)
+          .body(e.getMessage());
+    }
+
+    final int cellsPerPage = sheet.columns() * sheet.rows();
+    final String extension = sheet.format().name().toLowerCase();
+    if (count <= cellsPerPage) {
+      FailureList failures = new FailureList();
+      final byte[] data;
+      try {
+        data = renderPage(sheet, pageRequest, 0, count, useGerman, failures);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      if (failures.getCount() > 0) { // HTTP 400, 422, 500 or, if the page or a cell was shed, 503
+        List<FailureList.Failure> failed = failures.getListed();
+        final int status = data == null ? HttpStatus.SERVICE_UNAVAILABLE.value() :
+            failed.get(0).status();
+        var builder = ResponseEntity.status(status).contentType(BarcodeController.TEXT_PLAIN_UTF8);
+        if (status == HttpStatus.SERVICE_UNAVAILABLE.value())
+          builder.header("Retry-After", Integer.toString(renderService.getRetryAfterSeconds()));
+        return builder.body(failed.stream().map(f -> "Cell " + f.index() + ": " + f.message())
+            .collect(Collectors.joining("\n")));
+      }
+      return ResponseEntity.ok()
+          .contentType(BarcodeController.CONTENT_TYPES.get(sheet.format()))
+          .header("Access-Control-Expose-Headers", "Content-Disposition")
+          .header("Content-Disposition", "attachment; filename=\"sheet." + extension + "\"")
+          .body(data); // HTTP 200
+    }
+
+    StreamingResponseBody body = out -> writeZip(sheet, pageRequest, count, useGerman, out);
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType("application/zip"))
+        .header("Access-Control-Expose-Headers", "Content-Disposition")
+        .header("Content-Disposition", "attachment; filename=\"sheet.zip\"")
+        .body(body); // HTTP 200
+  }
+
+
+  //---- Writes one document per page, rendering the next page only after the previous one is
+  //     written
+  private void writeZip(SheetRequest sheet, BarcodeRequest pageRequest, int count,
+      boolean useGerman, OutputStream out) throws IOException {
+    final int cellsPerPage = sheet.columns() * sheet.rows();
+    final int pages = (count + cellsPerPage - 1) / cellsPerPage;
+    final String extension = sheet.format().name().toLowerCase();
+    ZipOutputStream zip = new ZipOutputStream(out);
+    Manifest manifest = new Manifest();
+    manifest.cells = count;
+    manifest.pages = pages;
+    for (int page=0; page<pages; page++) {
+      byte[] data = renderPage(sheet, pageRequest, page, count, useGerman, manifest.failures);
+      if (data == null) // Shed, its cells are listed as failed
+        continue;
+      zip.putNextEntry(new ZipEntry(String.format("page-%04d.%s", page + 1, extension)));
+      zip.write(data);
+      zip.closeEntry();
+    }
+    zip.putNextEntry(new ZipEntry("manifest.json"));
+    zip.write(objectMapper.writeValueAsBytes(manifest));
+    zip.closeEntry();
+    zip.finish();
+  }
+
+
+  //---- Prepares the cells of the page in parallel and draws them in order. Failed cells are added
+  //     to 'failures' and left empty. Returns 'null' if the page is shed by the render bulkhead;
+  //     then all its cells are added to 'failures', the prepared ones with HTTP status 503.
+  private byte[] renderPage(SheetRequest sheet, BarcodeRequest pageRequest, int page, int count,
+      boolean useGerman, FailureList failures) throws IOException {
+    final int cellsPerPage = sheet.columns() * sheet.rows();
+    final int first = page * cellsPerPage;
+    final int last = Math.min(count, first + cellsPerPage);
+    List<Future<PreparedCell>> pending = new ArrayList<>(last - first);
+    for (int i=first; i<last; i++) {
+      final int index = i;
+      pending.add(executor.submit(() -> prepareCell(sheet, index, useGerman)));
+    }
+
+    final PreparedCell[] cells = new PreparedCell[last - first];
+    try {
+      for (int i=first; i<last; i++)
+        cells[i - first] = await(pending.get(i - first));
+    } finally {
+      pending.forEach(future -> future.cancel(true)); // Only not done if the client went away
+    }
+
+    try (RenderBulkhead.Permit permit = renderService.acquire(sheet.format())) {
+      final BarExporter exporter;
+      try { // Parameters are validated beforehand
+        exporter = renderer.newExporter(pageRequest, sheet.pageWidth(), sheet.pageHeight());
+      } catch (RenderException e) {
+        throw new IllegalStateException(e);
+      }
+      exporter.setTitle(TITLE);
+      Graphics2D g2d = exporter.getGraphics2D();
+      for (int i=first; i<last; i++) {
+        PreparedCell cell = cells[i - first];
+        if (cell.barcode != null) {
+          final int position = i - first;
+          cell.barcode.draw(g2d, sheet.cellX(position % sheet.columns()),
+              sheet.cellY(position / sheet.columns()));
+        } else {
+          failures.add(i + 1, cell.status, cell.message);
+        }
+      }
+      g2d.dispose();
+      return renderer.encode(new DrawnBarcode(exporter, pageRequest, new RenderTrace()));
+    } catch (RenderException e) { // HTTP 503, thrown before anything is drawn
+      for (int i=first; i<last; i++) {
+        PreparedCell cell = cells[i - first];
+        if (cell.barcode != null)
+          failures.add(i + 1, e.status.value(), e.getMessage());
+        else
+          failures.add(i + 1, cell.status, cell.message);
+      }
+      return null;
+    }
+  }
+
+
+  //----
+  private static PreparedCell await(Future<PreparedCell> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Sheet interrupted", e);
+    } catch (ExecutionException e) { // Unexpected - rendering errors are caught in 'prepareCell'
+      throw new IOException("Sheet cell failed", e.getCause());
+    }
+  }
+
+
+  //----
+  private PreparedCell prepareCell(SheetRequest sheet, int index, boolean useGerman) {
+    RenderTrace trace = new RenderTrace();
+    trace.mark();
+    try {
+      BarcodeRequest r = bindCell(sheet, index);
+      trace.end(RenderTrace.Stage.BIND);
+      return new PreparedCell(renderService.prepareBackground(r, useGerman, trace), 200, null);
+    } catch (RenderException e) { // HTTP 400, 422 or, if shed, 503
+      return new PreparedCell(null, e.status.value(), e.getMessage());
+    } catch (RuntimeException e) { // Unexpected - recorded by the RenderService
+      return new PreparedCell(null, 500, "Internal error");
+    } catch (InterruptedException e) { // The page is abandoned, the cell is never drawn
+      Thread.currentThread().interrupt();
+      return new PreparedCell(null, 503, "Sheet interrupted");
+    }
+  }
+
+
+  //---- Number of cells. Throws an exception (HTTP 400) if the layout is invalid.
+  private int countCells(SheetRequest sheet) throws RenderException {
+    if ((sheet.cells() != null) == (sheet.template() != null))
+      throw RenderException.badRequest("Either cells or template and contents are required");
+    if (sheet.template() != null && sheet.contents() == null)
+      throw RenderException.badRequest("Contents are required with a template");
+    final int count = sheet.cells() != null ? sheet.cells().size() : sheet.contents().size();
+    if (count == 0)
+      throw RenderException.badRequest("At least one cell is required");
+    if (count > maxCells)
+      throw RenderException.badRequest("At most " + maxCells + " cells are allowed per sheet");
+    if (sheet.cellWidth() <= 0.0 || sheet.cellHeight() <= 0.0)
+      throw RenderException.badRequest("The cells do not fit onto the page");
+    return count;
+  }
+
+
+  //---- Binds and validates the barcode of the cell with the page-wide parameters of the sheet.
+  //     Throws an exception (HTTP 400) if it is invalid.
+  private BarcodeRequest bindCell(SheetRequest sheet, int index) throws RenderException {
+    final SheetRequest.Cell cell = sheet.cells() != null ? sheet.cells().get(index) :
+        sheet.template();
+    final boolean is1D = cell != null && cell.barcode1d() != null;
+    if (cell == null || is1D == (cell.barcode2d() != null))
+      throw RenderException.badRequest("Either barcode1d or barcode2d is required");
+
+    Map<String,Object> properties = new HashMap<>(is1D ? cell.barcode1d() : cell.barcode2d());
+    if (sheet.cells() == null)
+      properties.put("content", sheet.contents().get(index));
+    properties.putIfAbsent("width", sheet.cellWidth());
+    properties.putIfAbsent("height", sheet.cellHeight());
+    properties.put("format", sheet.format());
+    properties.put("colorModel", sheet.colorModel());
+    properties.put("foreground", sheet.foreground());
+    properties.put("background", sheet.background());
+    properties.put("opaque", sheet.opaque());
+    properties.put("dpi", sheet.dpi());
+    properties.remove("transform"); // Cells cannot be rotated on their own
+    properties.remove("formatInlineSVG");
+    properties.remove("formatCompactSVG");
+    properties.remove("formatPreviewDpiEPS");
+    Class<? extends BarcodeRequest> requestType =
+        is1D ? BarcodeRequest1D.class : BarcodeRequest2D.class;
+    return requestMapper.bind(requestType, properties, "Invalid field value");
+  }
+
+
+  //----
+  private record PreparedCell(BarcodeRenderer.PreparedBarcode barcode, int status,
+      String message) {}
+
+
+  //---- Serialized as the final ZIP entry. Successful cells are only counted, failed ones only
+  //     listed up to a limit.
+  private static class Manifest {
+    public int cells;
+    public int pages;
+    final FailureList failures = new FailureList();
+
+    public int getFailedCount() {
+      return failures.getCount();
+    }
+
+    public List<FailureList.Failure> getFailed() {
+      return failures.getListed();
+    }
+  }
+
+}
@@ -0,0 +1,100 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.List;
+import java.util.Map;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import de.vwsoft.barcodelib4j.image.ImageColorModel;
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+
+
+// Request body of the /sheet endpoint: a page layout (all lengths in millimeters) and the barcodes
+// of its cells. Cells are given either one by one ('cells') or as a 'template' plus one content per
+// cell ('contents'). Each cell holds either a "barcode1d" or a "barcode2d" object, bound like the
+// JSON body of /create1d or /create2d. Cells are filled row by row; if there are more cells than
+// fit onto one page, further pages follow.
+//
+// Format, color model, colors, opacity and dpi apply to the whole page and override those of the
+// cells. Width and height of a barcode default to the cell size.
+public record SheetRequest(
+    @NotNull(message = "Page width is required")
+    @Positive(message = "Page width must be greater than 0")
+    Double pageWidth,
+
+    @NotNull(message = "Page height is required")
+    @Positive(message = "Page height must be greater than 0")
+    Double pageHeight,
+
+    @Min(value = 0, message = "Page margin left must be 0 or greater") Double marginLeft,
+    @Min(value = 0, message = "Page margin right must be 0 or greater") Double marginRight,
+    @Min(value = 0, message = "Page margin top must be 0 or greater") Double marginTop,
+    @Min(value = 0, message = "Page margin bottom must be 0 or greater") Double marginBottom,
+
+    @NotNull(message = "Number of columns is required")
+    @Min(value = 1, message = "Number of columns must be at least 1")
+    @Max(value = 100, message = "Number of columns must be at most 100")
+    Integer columns,
+
+    @NotNull(message = "Number of rows is required")
+    @Min(value = 1, message = "Number of rows must be at least 1")
+    @Max(value = 100, message = "Number of rows must be at most 100")
+    Integer rows,
+
+    @Min(value = 0, message = "Gap X must be 0 or greater") Double gapX,
+    @Min(value = 0, message = "Gap Y must be 0 or greater") Double gapY,
+
+    @NotNull(message = "Format is required")
+    ImageFormat format,
+
+    ImageColorModel colorModel,
+    List<Integer> foreground,
+    List<Integer> background,
+    Boolean opaque,
+    Integer dpi,
+
+    List<Cell> cells,
+    Cell template,
+    List<String> contents) {
+
+
+  //---- Exactly one of both is expected; the properties are bound when the sheet is rendered, so
+  //     that an invalid cell is reported with its position
+  public record Cell(Map<String,Object> barcode1d, Map<String,Object> barcode2d) {}
+
+
+  //---- Width of a cell, not positive if the cells do not fit onto the page
+  double cellWidth() {
+    return (pageWidth - orZero(marginLeft) - orZero(marginRight) - (columns - 1) * orZero(gapX))
+        / columns;
+  }
+
+
+  //---- Height of a cell, not positive if the cells do not fit onto the page
+  double cellHeight() {
+    return (pageHeight - orZero(marginTop) - orZero(marginBottom) - (rows - 1) * orZero(gapY))
+        / rows;
+  }
+
+
+  //---- Left edge of the cell in the given column
+  double cellX(int column) {
+    return orZero(marginLeft) + column * (cellWidth() + orZero(gapX));
+  }
+
+
+  //---- Top edge of the cell in the given row
+  double cellY(int row) {
+    return orZero(marginTop) + row * (cellHeight() + orZero(gapY));
+  }
+
+
+  //----
+  private static double orZero(Double value) {
+    return value != null ? value : 0.0;
+  }
+
+}
@@ -0,0 +1,129 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+import de.vwsoft.barcodelib4j.oned.BarcodeType;
+import de.vwsoft.barcodelib4j.twod.TwoDType;
+
+
+// Training run for the CDS archive built in the Dockerfile. If started with 'training.run=true',
+// the application sends a representative request for every BarcodeType and TwoDType in every
+// ImageFormat to its own HTTP port, lists the fonts and exits. Thereby all classes of the request
+// path (Tomcat, Spring MVC, Jackson, validation, Barcode-Lib4J, AWT, fonts and image encoders)
+// are loaded and end up in the archive that is written at JVM exit.
+//
+// The property is checked at run time (see "Cold Start" in the README).
+@Component
+public class TrainingRun implements ApplicationRunner {
+  private static final Logger LOG = LoggerFactory.getLogger(TrainingRun.class);
+
+  // Tried in order per barcode type; the first content accepted in PNG format is used for all
+  // formats. Contents rejected by every type still exercise the validation path.
+  static final List<String> CANDIDATE_CONTENTS = List.of(
+      "(01)04012345123456(10)ABC123", "4012345123456", "401234512345", "4012345", "40123456",
+      "0123456789", "ABC-123");
+
+  private final boolean enabled;
+  private final Environment environment;
+  private final ObjectMapper objectMapper;
+  private final ConfigurableApplicationContext context;
+
+
+  //----
+  public TrainingRun(@Value("${training.run:false}") boolean enabled, Environment environment,
+      ObjectMapper objectMapper, ConfigurableApplicationContext context) {
+    this.enabled = enabled;
+    this.environment = environment;
+    this.objectMapper = objectMapper;
+    this.context = context;
+  }
+
+
+  //----
+  @Override
+  public void run(ApplicationArguments args) throws Exception {
+    if (!enabled)
+      return;
+
+    final String baseUrl = "http://localhost:" + environment.getProperty("local.server.port");
+    final HttpClient client = HttpClient.newHttpClient();
+    final long start = System.nanoTime();
+    int rendered = 0;
+    for (BarcodeType type : BarcodeType.values())
+      rendered += train(client, baseUrl, "1d", type);
+    for (TwoDType type : TwoDType.values())
+      rendered += train(client, baseUrl, "2d", type);
+    get(client, baseUrl + "/fonts");
+
+    LOG.info("Training run: {} files rendered in {} ms", rendered,
+        (System.nanoTime() - start) / 1_000_000L);
+    System.exit(SpringApplication.exit(context));
+  }
+
+
+  //---- Renders the type in all formats by POST and once by GET. Returns the number of files
+  //     rendered successfully.
+  private int train(HttpClient client, String baseUrl, String dimension, Enum<?> type)
+      throws Exception {
+    final String postUrl = baseUrl + "/create" + dimension;
+    for (String content : CANDIDATE_CONTENTS) {
+      if (post(client, postUrl, type, content, ImageFormat.PNG) != 200)
+        continue;
+      int rendered = 1;
+      for (ImageFormat format : ImageFormat.values()) {
+        if (format != ImageFormat.PNG && post(client, postUrl, type, content, format) == 200)
+          rendered++;
+      }
+      SortedMap<String,String> query = new TreeMap<>(Map.of("content", content));
+      get(client, baseUrl + "/barcode/" + dimension + '/' + type.name() + ".svg?"
+          + QueryRequestMapper.toQueryString(query));
+      return rendered;
+    }
+    return 0;
+  }
+
+
+  //----
+  private int post(HttpClient client, String url, Enum<?> type, String content,
+      ImageFormat format) throws Exception {
+    Map<String,Object> body = new LinkedHashMap<>();
+    body.put("type", type.name());
+    body.put("content", content);
+    body.put("width", 40);
+    body.put("height", 20);
+    body.put("format", format.name());
+    HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+        .build();
+    return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+  }
+
+
+  //----
+  private int get(HttpClient client, String url) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(url)).build();
+    return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+  }
+
+}
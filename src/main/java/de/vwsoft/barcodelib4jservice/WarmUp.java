@@ -0,0 +1,193 @@
+package de.vwsoft.barcodelib4jservice;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+import de.vwsoft.barcodelib4j.oned.BarcodeType;
+import de.vwsoft.barcodelib4j.twod.TwoDType;
+
+
+// Warm-up stage at startup. Renders a synthetic matrix of every BarcodeType and TwoDType in every
+// ImageFormat 'warmup.iterations' times on a pool of worker threads, so that the render path is
+// loaded, initialized and JIT-compiled before the first real request arrives. The requests are
+// bound and validated like JSON bodies and rendered by the RenderService like batch items, i.e.
+// through the render bulkhead (with background permits) and the metrics, but past the render cache,
+// which is left to real traffic. The contents of 2D symbols (except GS1) change per iteration, so
+// that the symbol cache does not skip the encoders.
+//
+// Spring Boot publishes ReadinessState.ACCEPTING_TRAFFIC only after all ApplicationRunners have
+// returned, so /health reports the service as ready only once the warm-up is complete. It ends
+// early after 'warmup.max-seconds'. It is skipped during the training run, which loads the classes
+// over HTTP itself and does not need compiled code.
+//
+// The properties are checked at run time (see "Cold Start" in the README).
+@Component
+public class WarmUp implements ApplicationRunner {
+  private static final Logger LOG = LoggerFactory.getLogger(WarmUp.class);
+
+  private final RenderService renderService;
+  private final QueryRequestMapper requestMapper;
+  private final FontRegistry fontRegistry;
+  private final boolean enabled;
+  private final int iterations;
+  private final int threads;
+  private final int maxSeconds;
+
+
+  //----
+  public WarmUp(RenderService renderService, QueryRequestMapper requestMapper,
+      FontRegistry fontRegistry,
+      @Value("${warmup.enabled:true}") boolean enabled,
+      @Value("${training.run:false}") boolean trainingRun,
+      @Value("${warmup.iterations:10}") int iterations,
+      @Value("${warmup.threads:0}") int threads,
+      @Value("${warmup.max-seconds:60}") int maxSeconds) {
+    this.renderService = renderService;
+    this.requestMapper = requestMapper;
+    this.fontRegistry = fontRegistry;
+    this.enabled = enabled && !trainingRun;
+    this.iterations = Math.max(1, iterations);
+    this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    this.maxSeconds = Math.max(1, maxSeconds);
+  }
+
+
+  //----
+  @Override
+  public void run(ApplicationArguments args) throws InterruptedException {
+    if (!enabled)
+      return;
+
+    final long start = System.nanoTime();
+    final long deadline = start + TimeUnit.SECONDS.toNanos(maxSeconds);
+    final AtomicInteger threadNumber = new AtomicInteger();
+    final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread t = new Thread(runnable, "warmup-" + threadNumber.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    final AtomicInteger rendered = new AtomicInteger();
+    try {
+      // Font names are collected in the background since construction; /fonts waits for them
+      CompletableFuture<?> fonts =
+          CompletableFuture.runAsync(fontRegistry::getAvailableFontNames, executor);
+
+      // Per type, the first content that renders as PNG is used for all formats
+      List<CompletableFuture<Sample>> samples = new ArrayList<>();
+      for (BarcodeType type : BarcodeType.values()) {
+        samples.add(CompletableFuture.supplyAsync(
+            () -> findSample(BarcodeRequest1D.class, type, false, deadline), executor));
+      }
+      for (TwoDType type : TwoDType.values()) {
+        samples.add(CompletableFuture.supplyAsync(
+            () -> findSample(BarcodeRequest2D.class, type, !type.isGS1(), deadline), executor));
+      }
+
+      for (int i=0; i<iterations; i++) {
+        final int iteration = i;
+        for (CompletableFuture<Sample> future : samples) {
+          Sample sample = awaitSample(future, deadline);
+          if (sample == null)
+            continue;
+          for (ImageFormat format : ImageFormat.values()) {
+            executor.execute(() -> {
+              if (System.nanoTime() - deadline < 0 && render(sample, format, iteration))
+                rendered.incrementAndGet();
+            });
+          }
+        }
+      }
+      fonts.join();
+      executor.shutdown();
+      executor.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    LOG.info("Warm-up: {} files rendered in {} ms", rendered.get(),
+        (System.nanoTime() - start) / 1_000_000L);
+  }
+
+
+  //---- The sample, or null if it is not found before the warm-up ends
+  private static Sample awaitSample(CompletableFuture<Sample> future, long deadline)
+      throws InterruptedException {
+    try {
+      return future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (ExecutionException | TimeoutException e) {
+      return null;
+    }
+  }
+
+
+  //---- Returns a sample of the type with the first candidate content that renders as PNG, or null
+  //     if the type accepts none of them or the warm-up has ended ('deadline', see System#nanoTime)
+  private Sample findSample(Class<? extends BarcodeRequest> requestType, Enum<?> type,
+      boolean varyContent, long deadline) {
+    for (String content : TrainingRun.CANDIDATE_CONTENTS) {
+      if (System.nanoTime() - deadline >= 0)
+        return null;
+      Map<String,Object> properties = new LinkedHashMap<>();
+      properties.put("type", type.name());
+      properties.put("content", content);
+      properties.put("width", 40);
+      properties.put("height", 20);
+      Sample sample = new Sample(requestType, properties, varyContent);
+      if (render(sample, ImageFormat.PNG, 0))
+        return sample;
+    }
+    return null;
+  }
+
+
+  //---- Renders the sample in the format. Returns false if it is invalid, fails unexpectedly (which
+  //     is logged, but must not abort the startup) or the warm-up has ended.
+  private boolean render(Sample sample, ImageFormat format, int iteration) {
+    Map<String,Object> properties = new LinkedHashMap<>(sample.properties());
+    properties.put("format", format.name());
+    if (sample.varyContent() && iteration > 0)
+      properties.put("content", properties.get("content") + "-" + iteration);
+    RenderTrace trace = new RenderTrace();
+    trace.mark();
+    try {
+      BarcodeRequest r =
+          requestMapper.bind(sample.requestType(), properties, "Invalid field value");
+      trace.end(RenderTrace.Stage.BIND);
+      renderService.renderBackground(r, false, trace);
+      return true;
+    } catch (RenderException e) {
+      return false;
+    } catch (RuntimeException e) {
+      LOG.warn("Warm-up: {} as {} failed", sample.properties().get("type"), format, e);
+      return false;
+    } catch (InterruptedException e) { // Past 'warmup.max-seconds'
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+
+  //---- A request of one barcode type, rendered in every format. 'varyContent': the content gets
+  //     the iteration appended, which every non-GS1 2D type accepts.
+  private record Sample(Class<? extends BarcodeRequest> requestType,
+      Map<String,Object> properties, boolean varyContent) {
+  }
+
+}
@@ -1,7 +1,13 @@
 package de.vwsoft.barcodelib4jservice;
 
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.servlet.HandlerExceptionResolver;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -12,13 +18,45 @@ public class WebConfig implements WebMvcConfigurer {
   @Value("${cors.allowed-origins}")
   private String allowedOrigins;
 
+  private final BarcodeRenderer renderer;
+  private final RenderMetrics renderMetrics;
+
+
+  public WebConfig(BarcodeRenderer renderer, RenderMetrics renderMetrics) {
+    this.renderer = renderer;
+    this.renderMetrics = renderMetrics;
+  }
+
 
   @Override // Configure CORS to allow requests from web clients on different domains
   public void addCorsMappings(CorsRegistry registry) {
     registry.addMapping("/**")
         .allowedOrigins(allowedOrigins.split(","))
-        .allowedMethods("GET", "POST", "OPTIONS")
+        .allowedMethods("GET", "POST", "DELETE", "OPTIONS")
         .allowedHeaders("*");
   }
 
+
+  @Override // Encode uncached output (RenderService.Drawing) into pooled buffers, and send
+            // ByteBuffer bodies (from the DiskCache) without copying them onto the heap
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.add(0, new DrawnBarcodeConverter(renderer, renderMetrics));
+    converters.add(1, new ByteBufferConverter());
+  }
+
+
+  @Override // Record barcode requests rejected by @Valid (HTTP 400) in the render metrics. The
+            // resolver returns null, so the response is still written by the default resolvers.
+  public void extendHandlerExceptionResolvers(List<HandlerExceptionResolver> resolvers) {
+    resolvers.add(0, (request, response, handler, e) -> {
+      if (e instanceof MethodArgumentNotValidException invalid
+          && invalid.getTarget() instanceof BarcodeRequest r) {
+        Object trace = request.getAttribute(RenderTrace.ATTRIBUTE);
+        renderMetrics.record(r, trace instanceof RenderTrace t ? t : new RenderTrace(),
+            HttpStatus.BAD_REQUEST.value(), -1L);
+      }
+      return null;
+    });
+  }
+
 }
@@ -0,0 +1,103 @@
+package de.vwsoft.barcodelib4jservice;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+
+// Allocation regression check for the request path of POST /create1d and /create2d: JSON binding,
+// bean validation, cache key and ETag, rendering into a pooled buffer and the download file name.
+// Typical requests are run with distinct contents (so that the symbol cache does not help) and the
+// bytes allocated per request are taken from the allocated-bytes counter of the current thread,
+// after a warm-up that lets the JIT compile (and scalar-replace) the hot path. Fails if a request
+// exceeds its budget. The system property 'allocation.budget.factor' scales all budgets, e.g.
+//
+//   mvn test -Dtest=AllocationBudgetTest -Dallocation.budget.factor=0.8
+//
+// to find out how much headroom is left.
+class AllocationBudgetTest {
+  private static final int ITERATIONS = 2000;
+
+  //---- Name, request type, JSON body per content index, budget in bytes per request
+  private record Case(String name, Class<? extends BarcodeRequest> type,
+      IntFunction<Map<String,Object>> body, long budget) {}
+
+  private static final List<Case> CASES = List.of(
+      new Case("EAN-13 PNG 300 dpi", BarcodeRequest1D.class, i -> Map.of(
+          "type", "EAN13", "content", String.format("4006381%05d", i % 100000),
+          "autoComplete", true, "width", 40.0, "height", 20.0, "format", "PNG",
+          "dpi", 300), 400_000L),
+      new Case("Code 128 SVG", BarcodeRequest1D.class, i -> Map.of(
+          "type", "CODE128", "content", "ORDER-" + i,
+          "width", 60.0, "height", 20.0, "format", "SVG"), 250_000L),
+      new Case("QR Code PNG 300 dpi", BarcodeRequest2D.class, i -> Map.of(
+          "type", "QRCODE", "content", "https://example.com/item/" + i,
+          "width", 30.0, "height", 30.0, "format", "PNG", "dpi", 300), 300_000L),
+      new Case("QR Code SVG", BarcodeRequest2D.class, i -> Map.of(
+          "type", "QRCODE", "content", "https://example.com/item/" + i,
+          "width", 30.0, "height", 30.0, "format", "SVG"), 400_000L),
+      new Case("DataMatrix PDF CMYK", BarcodeRequest2D.class, i -> Map.of(
+          "type", "DATAMATRIX", "content", "LOT-" + i, "colorModel", "CMYK",
+          "width", 20.0, "height", 20.0, "format", "PDF"), 400_000L),
+      new Case("GS1-128 PNG 300 dpi", BarcodeRequest1D.class, i -> Map.of(
+          "type", "EAN128", "content", "(01)09501101530003\n(10)" + (100000 + i),
+          "autoComplete", true, "width", 80.0, "height", 25.0, "format", "PNG", "dpi", 300,
+          "foreground", List.of(0, 0, 0), "background", List.of(255, 255, 255)), 500_000L));
+
+
+  //----
+  @Test
+  void staysWithinBudgets() throws Exception {
+    final double factor = Double.parseDouble(System.getProperty("allocation.budget.factor", "1"));
+    final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    final BarcodeRenderer renderer = new BarcodeRenderer(new FontRegistry(""), 0, 1 << 20, 4096,
+        true, 3);
+
+    List<String> exceeded = new ArrayList<>();
+    for (Case c : CASES) {
+      // Bodies are serialized beforehand, so that only the request path is measured
+      final byte[][] bodies = new byte[2 * ITERATIONS][];
+      for (int i=0; i<bodies.length; i++)
+        bodies[i] = objectMapper.writeValueAsBytes(c.body.apply(i));
+
+      long sink = 0L;
+      for (int i=0; i<ITERATIONS; i++) // Warm-up
+        sink += handle(c, bodies[i], objectMapper, validator, renderer);
+      final long before = threads.getCurrentThreadAllocatedBytes();
+      for (int i=ITERATIONS; i<bodies.length; i++)
+        sink += handle(c, bodies[i], objectMapper, validator, renderer);
+      final long perRequest = (threads.getCurrentThreadAllocatedBytes() - before) / ITERATIONS;
+
+      final long budget = (long)(c.budget * factor);
+      if (perRequest > budget || sink < 0L)
+        exceeded.add(String.format("%s: %,d B/request, budget %,d", c.name, perRequest, budget));
+    }
+    assertTrue(exceeded.isEmpty(), String.join("\n", exceeded));
+  }
+
+
+  //---- The steps of BarcodeController#createBarcode1D/2D that allocate, minus the HTTP layer
+  private static long handle(Case c, byte[] body, ObjectMapper objectMapper, Validator validator,
+      BarcodeRenderer renderer) throws Exception {
+    BarcodeRequest r = objectMapper.readValue(body, c.type);
+    if (!validator.validate(r).isEmpty())
+      throw new IllegalStateException("Invalid request: " + c.name);
+    final String eTag = '"' + r.getCacheKey() + '-' + renderer.getRenderVersion() + '"';
+    final byte[] data = renderer.render(r, false);
+    return data.length + eTag.length() + r.getFileName().length();
+  }
+
+}
@@ -0,0 +1,91 @@
+package de.vwsoft.barcodelib4jservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+// Segments of the DiskCache are kept across a restart with the same render version and dropped
+// after a restart with another one. New segments are added and the oldest evicted while putting.
+class DiskCacheTest {
+  private static final int SEGMENT_BYTES = 1 << 20;
+
+  @TempDir
+  Path directory;
+
+
+  //----
+  @Test
+  void keepsSegmentsOfTheSameRenderVersion() {
+    DiskCache cache = open(true);
+    cache.put("a", new byte[] { 1, 2, 3 });
+    cache.close();
+
+    cache = open(true);
+    ByteBuffer data = cache.get("a");
+    assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), data);
+    cache.close();
+  }
+
+
+  //----
+  @Test
+  void dropsSegmentsOfAnotherRenderVersion() throws Exception {
+    assertNotEquals(renderer(true).getRenderVersion(), renderer(false).getRenderVersion());
+    DiskCache cache = open(true);
+    cache.put("a", new byte[] { 1, 2, 3 });
+    cache.close();
+
+    cache = open(false);
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.getStats().entries());
+    cache.close();
+    try (var files = Files.list(directory)) {
+      assertEquals(1L, files.filter(p -> p.getFileName().toString().startsWith("segment-"))
+          .count());
+    }
+  }
+
+
+  //----
+  @Test
+  void rollsOverToNewSegments() throws Exception {
+    DiskCache cache = open(true);
+    final byte[] data = new byte[SEGMENT_BYTES / 3];
+    for (int i=0; i<12; i++) {
+      data[0] = (byte)i;
+      cache.put("k" + i, data);
+    }
+    assertNull(cache.get("k0"));
+    assertEquals(11, cache.get("k11").get(0));
+    try (var files = Files.list(directory)) {
+      assertEquals(4L, files.filter(p -> p.getFileName().toString().startsWith("segment-"))
+          .count());
+    }
+    cache.close();
+  }
+
+
+  //----
+  private DiskCache open(boolean directRaster) {
+    DiskCache cache = new DiskCache(renderer(directRaster), directory.toString(),
+        4L * SEGMENT_BYTES, SEGMENT_BYTES);
+    assertTrue(cache.isEnabled());
+    return cache;
+  }
+
+
+  //----
+  private static BarcodeRenderer renderer(boolean directRaster) {
+    return new BarcodeRenderer(new FontRegistry(""), 1, 1048576, 100, directRaster, 3);
+  }
+
+}
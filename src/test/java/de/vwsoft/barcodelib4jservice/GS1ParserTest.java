@@ -0,0 +1,84 @@
+package de.vwsoft.barcodelib4jservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+class GS1ParserTest {
+
+  //----
+  @Test
+  void parsesElements() {
+    GS1Parser.Result result = GS1Parser.parse("(01)09501101530003(10)AB12\n(17)240229");
+    assertTrue(result.isValid(), result.errMsg());
+    assertTrue(result.checked());
+    assertEquals(3, result.elements().size());
+    assertEquals(new GS1Parser.Element("10", "AB12"), result.elements().get(1));
+  }
+
+
+  //----
+  @Test
+  void reportsUncheckedAIs() {
+    GS1Parser.Result result = GS1Parser.parse("(01)09501101530003(7240)ABC");
+    assertTrue(result.isValid(), result.errMsg());
+    assertFalse(result.checked());
+  }
+
+
+  //----
+  @Test
+  void leavesUndefinedMeasureAIsUnchecked() {
+    assertTrue(GS1Parser.parse("(3169)123456").checked());
+    assertFalse(GS1Parser.parse("(3180)123456").checked());
+    assertFalse(GS1Parser.parse("(3390)123456").checked());
+    assertTrue(GS1Parser.parse("(3570)123456").checked());
+    assertFalse(GS1Parser.parse("(3580)123456").checked());
+    assertTrue(GS1Parser.parse("(3690)123456").checked());
+  }
+
+
+  //----
+  @Test
+  void checksMonthLengths() {
+    assertTrue(GS1Parser.parse("(17)250131").isValid());
+    assertTrue(GS1Parser.parse("(17)250430").isValid());
+    assertFalse(GS1Parser.parse("(17)250431").isValid());
+    assertFalse(GS1Parser.parse("(17)250631").isValid());
+    assertFalse(GS1Parser.parse("(17)251301").isValid());
+    assertFalse(GS1Parser.parse("(17)250001").isValid());
+    assertTrue(GS1Parser.parse("(17)250900").isValid()); // Day 00: last day of the month
+  }
+
+
+  //----
+  @Test
+  void checksLeapYears() {
+    assertTrue(GS1Parser.parse("(17)240229", 2025).isValid());
+    assertFalse(GS1Parser.parse("(17)250229", 2025).isValid());
+    assertTrue(GS1Parser.parse("(17)250228", 2025).isValid());
+    assertTrue(GS1Parser.parse("(17)000229", 2025).isValid()); // 2000 is a leap year
+  }
+
+
+  //----
+  @Test
+  void resolvesCenturyInSlidingWindow() {
+    assertTrue(GS1Parser.parse("(17)000229", 2049).isValid()); // 2000, 49 years before
+    assertFalse(GS1Parser.parse("(17)000229", 2050).isValid()); // 2100, 50 years after
+    assertFalse(GS1Parser.parse("(17)000229", 1949).isValid()); // 1900, 49 years before
+    assertTrue(GS1Parser.parse("(17)000229", 1950).isValid()); // 2000, 50 years after
+  }
+
+
+  //----
+  @Test
+  void checksCheckDigits() {
+    assertTrue(GS1Parser.parse("(01)09501101530003").isValid());
+    assertFalse(GS1Parser.parse("(01)09501101530004").isValid());
+  }
+
+}
@@ -0,0 +1,87 @@
+package de.vwsoft.barcodelib4jservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.vwsoft.barcodelib4j.twod.TwoDCode;
+import de.vwsoft.barcodelib4j.twod.TwoDSymbol;
+import de.vwsoft.barcodelib4j.twod.TwoDType;
+
+
+// Aztec Codes and Micro QR Codes may have an all light border row or column, which the dark pixels
+// of a drawing do not reveal. The module matrix must include it nevertheless.
+class ModuleMatrixTest {
+  private static final int SIZE = 1022; // Drawing area of ModuleMatrix' first probe
+  private static final int CONTENTS = 100;
+
+
+  //----
+  @Test
+  void recoversLightBordersOfAztecAndMicroQR() {
+    List<TwoDType> types = Arrays.stream(TwoDType.values())
+        .filter(t -> t.name().contains("AZTEC") || t.name().contains("MICRO")).toList();
+    assertFalse(types.isEmpty());
+    for (TwoDType type : types) {
+      for (int quietZone : new int[] { 0, 2 }) {
+        Random random = new Random(type.ordinal() * 31 + quietZone);
+        for (int i=0; i<CONTENTS; i++) {
+          String content = Long.toString(random.nextLong() >>> (random.nextInt(48) + 1), 36);
+          TwoDCode twoDCode = new TwoDCode(type);
+          twoDCode.setContent(content);
+          twoDCode.setQuietZone(quietZone);
+          if (!twoDCode.canEncode())
+            continue;
+          TwoDSymbol symbol = twoDCode.buildSymbol();
+          ModuleMatrix matrix = ModuleMatrix.of(symbol, quietZone);
+          String message = type + " \"" + content + "\", quiet zone " + quietZone;
+          assertEquals(matrix.columns, matrix.rows, message);
+          assertEquals(1, matrix.columns % 2, message);
+          if (type.name().contains("MICRO"))
+            assertTrue(matrix.columns >= 11 && matrix.columns <= 17, message);
+          assertRedraws(symbol, matrix, quietZone, message);
+        }
+      }
+    }
+  }
+
+
+  //---- The symbol drawn like the first probe of ModuleMatrix must match the matrix pixel by pixel
+  //     when it is placed as Barcode-Lib4J places it: largest whole module size, centered. A grid
+  //     without its light border rows or columns gives another module size or position.
+  static void assertRedraws(TwoDSymbol symbol, ModuleMatrix matrix, int quietZone,
+      String message) {
+    BufferedImage image = new BufferedImage(SIZE + 2, SIZE + 2, BufferedImage.TYPE_BYTE_BINARY);
+    Graphics2D g2d = image.createGraphics();
+    g2d.setColor(Color.WHITE);
+    g2d.fillRect(0, 0, SIZE + 2, SIZE + 2);
+    g2d.setColor(Color.BLACK);
+    symbol.draw(g2d, 1.0, 1.0, SIZE, SIZE, 1.0);
+    g2d.dispose();
+
+    final int columns = matrix.columns + 2 * quietZone;
+    final int rows = matrix.rows + 2 * quietZone;
+    final int moduleSize = Math.min(SIZE / columns, SIZE / rows);
+    final int left = 1 + (SIZE - columns * moduleSize) / 2 + quietZone * moduleSize;
+    final int top = 1 + (SIZE - rows * moduleSize) / 2 + quietZone * moduleSize;
+    for (int y=0; y<SIZE+2; y++) {
+      for (int x=0; x<SIZE+2; x++) {
+        int column = Math.floorDiv(x - left, moduleSize), row = Math.floorDiv(y - top, moduleSize);
+        boolean expected = column >= 0 && column < matrix.columns && row >= 0
+            && row < matrix.rows && matrix.isDark(column, row);
+        if (expected != (image.getRaster().getSample(x, y, 0) == 0))
+          throw new AssertionError(message + ": pixel (" + x + ", " + y + ") differs");
+      }
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+package de.vwsoft.barcodelib4jservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.vwsoft.barcodelib4j.twod.TwoDType;
+
+
+// The direct PNG and BMP output of ModuleRaster must look exactly like the image that BarExporter
+// draws for the same request, for every TwoDType (those it does not support fall back to it).
+class ModuleRasterTest {
+  private static final int[] DPIS = { 150, 300, 600 };
+  private static final String[] FORMATS = { "PNG", "BMP" };
+  private static final String[] GEOMETRIES = {
+      "\"width\":20.0,\"height\":20.0",
+      "\"width\":31.7,\"height\":23.3,\"marginLeft\":1.3,\"marginTop\":2.9,\"marginRight\":0.7,"
+          + "\"marginBottom\":1.1",
+      "\"width\":12.0,\"height\":40.0,\"quietZone\":0" };
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+
+  //----
+  @Test
+  void matchesBarExporterForEveryType() throws Exception {
+    BarcodeRenderer direct = renderer(true);
+    BarcodeRenderer drawn = renderer(false);
+    for (TwoDType type : TwoDType.values()) {
+      String content = type.isGS1() ? "(01)09501101530003(10)AB12" : "Barcode-Lib4J 0123456789";
+      for (String format : FORMATS) {
+        for (int dpi : DPIS) {
+          for (String geometry : GEOMETRIES) {
+            BarcodeRequest2D r = objectMapper.readValue("{\"type\":\"" + type.name()
+                + "\",\"format\":\"" + format + "\",\"dpi\":" + dpi + ",\"content\":\"" + content
+                + "\"," + geometry + "}", BarcodeRequest2D.class);
+            String message = type + " " + format + " " + dpi + " dpi {" + geometry + "}";
+            assertSameImage(decode(drawn.render(r, false)), decode(direct.render(r, false)),
+                message);
+          }
+        }
+      }
+    }
+  }
+
+
+  //----
+  private static BarcodeRenderer renderer(boolean directRaster) {
+    return new BarcodeRenderer(new FontRegistry(""), 1, 1048576, 100, directRaster, 3);
+  }
+
+
+  //----
+  private static BufferedImage decode(byte[] data) throws IOException {
+    return ImageIO.read(new ByteArrayInputStream(data));
+  }
+
+
+  //----
+  private static void assertSameImage(BufferedImage expected, BufferedImage actual,
+      String message) {
+    assertEquals(expected.getWidth(), actual.getWidth(), message);
+    assertEquals(expected.getHeight(), actual.getHeight(), message);
+    for (int y=0; y<expected.getHeight(); y++) {
+      for (int x=0; x<expected.getWidth(); x++) {
+        if ((expected.getRGB(x, y) & 0xFFFFFF) != (actual.getRGB(x, y) & 0xFFFFFF))
+          throw new AssertionError(message + ": pixel (" + x + ", " + y + ") differs");
+      }
+    }
+  }
+
+}
@@ -0,0 +1,55 @@
+package de.vwsoft.barcodelib4jservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import de.vwsoft.barcodelib4j.image.ImageFormat;
+
+
+// The ETags of the metadata responses must not depend on the JVM, or clients behind a load
+// balancer would rarely get an HTTP 304.
+class PrecomputedJsonTest {
+
+  //----
+  @Test
+  void hasFixedETag() {
+    Map<String, Object> properties = new LinkedHashMap<>();
+    properties.put("isRaster", true);
+    properties.put("supportsTransparency", true);
+    properties.put("supportsCMYK", false);
+    Object value = List.of(new MetadataController.EnumInfo("PNG", properties));
+    for (int i=0; i<2; i++) {
+      PrecomputedJson json = PrecomputedJson.of(Jackson2ObjectMapperBuilder.json().build(), value);
+      assertEquals("\"84850ddfd78c6baec3fed81cf25df757c4b7e6591766b496011b96e70bffe569\"",
+          json.toResponse(null).getHeaders().getETag());
+    }
+  }
+
+
+  //----
+  @Test
+  void serializesEnumPropertiesInFixedOrder() {
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    Map<String, PrecomputedJson> first = MetadataController.buildEnumInfos(objectMapper);
+    Map<String, PrecomputedJson> second = MetadataController.buildEnumInfos(objectMapper);
+    first.forEach((path, json) -> assertEquals(json.toResponse(null).getHeaders().getETag(),
+        second.get(path).toResponse(null).getHeaders().getETag(), path));
+
+    String formats = new String(first.get("formats").toResponse(null).getBody(),
+        StandardCharsets.UTF_8);
+    long inOrder = Pattern.compile("\"properties\":\\{\"isRaster\":(true|false),"
+        + "\"supportsTransparency\":(true|false),\"supportsCMYK\":(true|false)\\}")
+        .matcher(formats).results().count();
+    assertEquals(ImageFormat.values().length, inOrder, formats);
+  }
+
+}